@@ -0,0 +1,93 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link EventBus#post(Object)} and {@link EventBus#postParallel(Object)} over handler count, event hierarchy depth
+ * and the way handlers were subscribed.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    static final int BURST = 64;
+
+    @Param({ "1", "10", "100" })
+    int handlers;
+
+    @Param({ "0", "4", "8" })
+    int depth;
+
+    @Param({ "annotation", "dynamic" })
+    String subscription;
+
+    EventBus bus;
+    Object event;
+    Object[] burst;
+
+    @Setup
+    public void setUp() {
+        bus = EventBus.create();
+        for (int i = 0; i < handlers; i++) {
+            if (subscription.equals("annotation")) {
+                bus.subscribe(new Listeners.Concurrent());
+            } else {
+                long[] calls = { 0 };
+                bus.subscribe(Events.E0.class, e -> calls[0]++);
+            }
+        }
+        event = Events.ofDepth(depth);
+        burst = new Object[BURST];
+        for (int i = 0; i < BURST; i++) {
+            burst[i] = Events.ofDepth(depth);
+        }
+    }
+
+    @Benchmark
+    public Object post() {
+        return bus.post(event);
+    }
+
+    @Benchmark
+    public Object postParallel() {
+        return bus.postParallel(event);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void postBurst(Blackhole blackhole) {
+        for (Object e : burst) {
+            blackhole.consume(bus.post(e));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void postAll() {
+        bus.postAll(burst);
+    }
+}
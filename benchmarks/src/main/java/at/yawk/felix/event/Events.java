@@ -0,0 +1,46 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+/**
+ * Event hierarchy used by the dispatch benchmarks: {@code E<n>} has n superclasses below Object, handlers subscribe to
+ * the root {@link E0}.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+final class Events {
+    private Events() {}
+
+    static Object ofDepth(int depth) {
+        switch (depth) {
+        case 0: return new E0();
+        case 1: return new E1();
+        case 2: return new E2();
+        case 4: return new E4();
+        case 8: return new E8();
+        default: throw new IllegalArgumentException("Unsupported depth " + depth);
+        }
+    }
+
+    static class E0 {}
+
+    static class E1 extends E0 {}
+
+    static class E2 extends E1 {}
+
+    static class E3 extends E2 {}
+
+    static class E4 extends E3 {}
+
+    static class E5 extends E4 {}
+
+    static class E6 extends E5 {}
+
+    static class E7 extends E6 {}
+
+    static class E8 extends E7 {}
+}
@@ -0,0 +1,34 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+/**
+ * Annotated listeners used by the benchmarks. They only count calls so the measured cost is dispatch.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+final class Listeners {
+    private Listeners() {}
+
+    public static class Concurrent {
+        long calls;
+
+        @Subscribe
+        public void on(Events.E0 event) {
+            calls++;
+        }
+    }
+
+    public static class Serial {
+        long calls;
+
+        @Subscribe(parallel = false)
+        public void on(Events.E0 event) {
+            calls++;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Several threads posting to the same listeners, comparing {@code parallel = false} handlers (serialized through
+ * their mailbox) against concurrent ones.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SerialContentionBenchmark {
+    @Param({ "1", "10" })
+    int handlers;
+
+    @Param({ "true", "false" })
+    boolean parallel;
+
+    EventBus bus;
+    Object event;
+
+    @Setup
+    public void setUp() {
+        bus = EventBus.create();
+        for (int i = 0; i < handlers; i++) {
+            bus.subscribe(parallel ? new Listeners.Concurrent() : new Listeners.Serial());
+        }
+        event = new Events.E0();
+    }
+
+    @Benchmark
+    public Object post() {
+        return bus.post(event);
+    }
+
+    @Benchmark
+    public Object postParallel() {
+        return bus.postParallel(event);
+    }
+}
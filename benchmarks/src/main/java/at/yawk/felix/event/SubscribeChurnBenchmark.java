@@ -0,0 +1,81 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Subscribe / unsubscribe cycles on a bus that already has a number of handlers, alone and while other threads keep
+ * posting.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@State(Scope.Group)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscribeChurnBenchmark {
+    @Param({ "0", "10", "100" })
+    int existing;
+
+    @Param({ "annotation", "dynamic" })
+    String subscription;
+
+    EventBus bus;
+    Object event;
+
+    @Setup
+    public void setUp() {
+        bus = EventBus.create();
+        for (int i = 0; i < existing; i++) {
+            bus.subscribe(new Listeners.Concurrent());
+        }
+        event = new Events.E0();
+    }
+
+    private void churn() {
+        SubscribeHandle handle = subscription.equals("annotation") ?
+                bus.subscribe(new Listeners.Concurrent()) :
+                bus.subscribe(Events.E0.class, e -> {});
+        handle.unsubscribe();
+    }
+
+    @Benchmark
+    @Group("churn")
+    public void churnAlone() {
+        churn();
+    }
+
+    @Benchmark
+    @Group("churnWhilePosting")
+    @GroupThreads(1)
+    public void churnWhilePosting() {
+        churn();
+    }
+
+    @Benchmark
+    @Group("churnWhilePosting")
+    @GroupThreads(3)
+    public Object postWhileChurning() {
+        return bus.post(event);
+    }
+}
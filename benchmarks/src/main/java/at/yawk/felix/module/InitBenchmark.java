@@ -0,0 +1,109 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of running {@link AnnotationInitializer} on a single module, which scans the whole class hierarchy for
+ * {@link Init} members on every call.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InitBenchmark {
+    ModuleManager manager;
+
+    @Setup
+    public void setUp() {
+        manager = ModuleManager.create();
+    }
+
+    @Benchmark
+    public Object noInit() {
+        Object module = new Plain();
+        AnnotationInitializer.instance.initialize(manager, module);
+        return module;
+    }
+
+    @Benchmark
+    public Object initMembers() {
+        Object module = new Annotated();
+        AnnotationInitializer.instance.initialize(manager, module);
+        return module;
+    }
+
+    @Benchmark
+    public Object initMembersInHierarchy() {
+        Object module = new Derived();
+        AnnotationInitializer.instance.initialize(manager, module);
+        return module;
+    }
+
+    static class Plain implements Runnable {
+        int value;
+
+        @Override
+        public void run() {
+            value++;
+        }
+    }
+
+    static class Annotated {
+        @Init ModuleManager manager;
+        int calls;
+
+        @Init
+        void first() {
+            calls++;
+        }
+
+        @Init(priority = 1)
+        void second(ModuleManager manager) {
+            calls++;
+        }
+
+        @Init(priority = 2)
+        private void third() {
+            calls++;
+        }
+    }
+
+    interface Marker {}
+
+    static class Intermediate extends Annotated implements Marker {
+        @Init(priority = 3)
+        void fourth() {
+            calls++;
+        }
+    }
+
+    static class Derived extends Intermediate implements Runnable {
+        @Init(priority = 4)
+        void fifth() {
+            calls++;
+        }
+
+        @Override
+        public void run() {}
+    }
+}
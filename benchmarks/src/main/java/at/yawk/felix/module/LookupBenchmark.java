@@ -0,0 +1,88 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lookups on a {@link ModuleManager} holding many modules that share the {@link Nodes.Service} interface.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+    @Param({ "1", "16", "128" })
+    int modules;
+
+    ModuleManager manager;
+    Class<?> exact;
+    ModuleRef<Nodes.Service> sharedRef;
+
+    @Setup
+    public void setUp() {
+        Nodes.graph = new Nodes.Graph(modules, 1);
+        manager = ModuleManager.create();
+        for (int i = 0; i < modules; i++) {
+            manager.registerModule(Nodes.TYPES[i]);
+        }
+        exact = Nodes.TYPES[modules - 1];
+        sharedRef = manager.ref(Nodes.Service.class);
+    }
+
+    @Benchmark
+    public Object getExact() {
+        return manager.get(exact);
+    }
+
+    @Benchmark
+    public Object getShared() {
+        return manager.get(Nodes.Service.class);
+    }
+
+    @Benchmark
+    public Object refShared() {
+        return sharedRef.get();
+    }
+
+    @Benchmark
+    public Optional<Nodes.Service> optionalShared() {
+        return manager.optional(Nodes.Service.class);
+    }
+
+    @Benchmark
+    public boolean hasMissing() {
+        return manager.has(Runnable.class);
+    }
+
+    @Benchmark
+    public long allShared() {
+        return manager.all(Nodes.Service.class).count();
+    }
+
+    @Benchmark
+    public void forEachShared(Blackhole blackhole) {
+        manager.forEach(Nodes.Service.class, blackhole::consume);
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.Arrays;
+
+/**
+ * Synthetic module classes for the ModuleManager benchmarks. Every node is a distinct class implementing
+ * {@link Service}; its dependencies are taken from the {@link Graph} installed by the running benchmark.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+final class Nodes {
+    private Nodes() {}
+
+    static volatile Graph graph;
+
+    interface Service {}
+
+    /**
+     * Layered dependency graph: nodes are split into {@code depth} layers of equal width and every node depends on up
+     * to two nodes of the layer before it.
+     */
+    static final class Graph {
+        final Class<?>[][] dependencies;
+
+        Graph(int size, int depth) {
+            int width = (size + depth - 1) / depth;
+            dependencies = new Class<?>[size][];
+            for (int i = 0; i < size; i++) {
+                int layerStart = i - i % width;
+                dependencies[i] = Arrays.stream(new int[]{ i - width, i - width + 1 })
+                        .filter(d -> d >= 0 && d < layerStart)
+                        .distinct()
+                        .mapToObj(d -> TYPES[d])
+                        .toArray(Class<?>[]::new);
+            }
+        }
+    }
+
+    abstract static class Node extends Module implements Service {
+        @Override
+        protected void listDependencies() {
+            for (Class<?> dependency : graph.dependencies[INDEX.get(getClass())]) {
+                require(dependency);
+            }
+        }
+    }
+
+    private static final ClassValue<Integer> INDEX = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return Arrays.asList(TYPES).indexOf(type);
+        }
+    };
+
+    static final Class<?>[] TYPES = {
+            N0.class,
+            N1.class,
+            N2.class,
+            N3.class,
+            N4.class,
+            N5.class,
+            N6.class,
+            N7.class,
+            N8.class,
+            N9.class,
+            N10.class,
+            N11.class,
+            N12.class,
+            N13.class,
+            N14.class,
+            N15.class,
+            N16.class,
+            N17.class,
+            N18.class,
+            N19.class,
+            N20.class,
+            N21.class,
+            N22.class,
+            N23.class,
+            N24.class,
+            N25.class,
+            N26.class,
+            N27.class,
+            N28.class,
+            N29.class,
+            N30.class,
+            N31.class,
+            N32.class,
+            N33.class,
+            N34.class,
+            N35.class,
+            N36.class,
+            N37.class,
+            N38.class,
+            N39.class,
+            N40.class,
+            N41.class,
+            N42.class,
+            N43.class,
+            N44.class,
+            N45.class,
+            N46.class,
+            N47.class,
+            N48.class,
+            N49.class,
+            N50.class,
+            N51.class,
+            N52.class,
+            N53.class,
+            N54.class,
+            N55.class,
+            N56.class,
+            N57.class,
+            N58.class,
+            N59.class,
+            N60.class,
+            N61.class,
+            N62.class,
+            N63.class,
+            N64.class,
+            N65.class,
+            N66.class,
+            N67.class,
+            N68.class,
+            N69.class,
+            N70.class,
+            N71.class,
+            N72.class,
+            N73.class,
+            N74.class,
+            N75.class,
+            N76.class,
+            N77.class,
+            N78.class,
+            N79.class,
+            N80.class,
+            N81.class,
+            N82.class,
+            N83.class,
+            N84.class,
+            N85.class,
+            N86.class,
+            N87.class,
+            N88.class,
+            N89.class,
+            N90.class,
+            N91.class,
+            N92.class,
+            N93.class,
+            N94.class,
+            N95.class,
+            N96.class,
+            N97.class,
+            N98.class,
+            N99.class,
+            N100.class,
+            N101.class,
+            N102.class,
+            N103.class,
+            N104.class,
+            N105.class,
+            N106.class,
+            N107.class,
+            N108.class,
+            N109.class,
+            N110.class,
+            N111.class,
+            N112.class,
+            N113.class,
+            N114.class,
+            N115.class,
+            N116.class,
+            N117.class,
+            N118.class,
+            N119.class,
+            N120.class,
+            N121.class,
+            N122.class,
+            N123.class,
+            N124.class,
+            N125.class,
+            N126.class,
+            N127.class
+    };
+
+    static class N0 extends Node {}
+
+    static class N1 extends Node {}
+
+    static class N2 extends Node {}
+
+    static class N3 extends Node {}
+
+    static class N4 extends Node {}
+
+    static class N5 extends Node {}
+
+    static class N6 extends Node {}
+
+    static class N7 extends Node {}
+
+    static class N8 extends Node {}
+
+    static class N9 extends Node {}
+
+    static class N10 extends Node {}
+
+    static class N11 extends Node {}
+
+    static class N12 extends Node {}
+
+    static class N13 extends Node {}
+
+    static class N14 extends Node {}
+
+    static class N15 extends Node {}
+
+    static class N16 extends Node {}
+
+    static class N17 extends Node {}
+
+    static class N18 extends Node {}
+
+    static class N19 extends Node {}
+
+    static class N20 extends Node {}
+
+    static class N21 extends Node {}
+
+    static class N22 extends Node {}
+
+    static class N23 extends Node {}
+
+    static class N24 extends Node {}
+
+    static class N25 extends Node {}
+
+    static class N26 extends Node {}
+
+    static class N27 extends Node {}
+
+    static class N28 extends Node {}
+
+    static class N29 extends Node {}
+
+    static class N30 extends Node {}
+
+    static class N31 extends Node {}
+
+    static class N32 extends Node {}
+
+    static class N33 extends Node {}
+
+    static class N34 extends Node {}
+
+    static class N35 extends Node {}
+
+    static class N36 extends Node {}
+
+    static class N37 extends Node {}
+
+    static class N38 extends Node {}
+
+    static class N39 extends Node {}
+
+    static class N40 extends Node {}
+
+    static class N41 extends Node {}
+
+    static class N42 extends Node {}
+
+    static class N43 extends Node {}
+
+    static class N44 extends Node {}
+
+    static class N45 extends Node {}
+
+    static class N46 extends Node {}
+
+    static class N47 extends Node {}
+
+    static class N48 extends Node {}
+
+    static class N49 extends Node {}
+
+    static class N50 extends Node {}
+
+    static class N51 extends Node {}
+
+    static class N52 extends Node {}
+
+    static class N53 extends Node {}
+
+    static class N54 extends Node {}
+
+    static class N55 extends Node {}
+
+    static class N56 extends Node {}
+
+    static class N57 extends Node {}
+
+    static class N58 extends Node {}
+
+    static class N59 extends Node {}
+
+    static class N60 extends Node {}
+
+    static class N61 extends Node {}
+
+    static class N62 extends Node {}
+
+    static class N63 extends Node {}
+
+    static class N64 extends Node {}
+
+    static class N65 extends Node {}
+
+    static class N66 extends Node {}
+
+    static class N67 extends Node {}
+
+    static class N68 extends Node {}
+
+    static class N69 extends Node {}
+
+    static class N70 extends Node {}
+
+    static class N71 extends Node {}
+
+    static class N72 extends Node {}
+
+    static class N73 extends Node {}
+
+    static class N74 extends Node {}
+
+    static class N75 extends Node {}
+
+    static class N76 extends Node {}
+
+    static class N77 extends Node {}
+
+    static class N78 extends Node {}
+
+    static class N79 extends Node {}
+
+    static class N80 extends Node {}
+
+    static class N81 extends Node {}
+
+    static class N82 extends Node {}
+
+    static class N83 extends Node {}
+
+    static class N84 extends Node {}
+
+    static class N85 extends Node {}
+
+    static class N86 extends Node {}
+
+    static class N87 extends Node {}
+
+    static class N88 extends Node {}
+
+    static class N89 extends Node {}
+
+    static class N90 extends Node {}
+
+    static class N91 extends Node {}
+
+    static class N92 extends Node {}
+
+    static class N93 extends Node {}
+
+    static class N94 extends Node {}
+
+    static class N95 extends Node {}
+
+    static class N96 extends Node {}
+
+    static class N97 extends Node {}
+
+    static class N98 extends Node {}
+
+    static class N99 extends Node {}
+
+    static class N100 extends Node {}
+
+    static class N101 extends Node {}
+
+    static class N102 extends Node {}
+
+    static class N103 extends Node {}
+
+    static class N104 extends Node {}
+
+    static class N105 extends Node {}
+
+    static class N106 extends Node {}
+
+    static class N107 extends Node {}
+
+    static class N108 extends Node {}
+
+    static class N109 extends Node {}
+
+    static class N110 extends Node {}
+
+    static class N111 extends Node {}
+
+    static class N112 extends Node {}
+
+    static class N113 extends Node {}
+
+    static class N114 extends Node {}
+
+    static class N115 extends Node {}
+
+    static class N116 extends Node {}
+
+    static class N117 extends Node {}
+
+    static class N118 extends Node {}
+
+    static class N119 extends Node {}
+
+    static class N120 extends Node {}
+
+    static class N121 extends Node {}
+
+    static class N122 extends Node {}
+
+    static class N123 extends Node {}
+
+    static class N124 extends Node {}
+
+    static class N125 extends Node {}
+
+    static class N126 extends Node {}
+
+    static class N127 extends Node {}
+}
@@ -0,0 +1,76 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Registration of a whole synthetic dependency graph into a fresh {@link ModuleManager}, once starting from the leaves
+ * of the graph (every registration resolves its dependencies recursively), once in dependency order and once as a
+ * single bulk registration.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistrationBenchmark {
+    @Param({ "8", "32", "128" })
+    int size;
+
+    @Param({ "1", "4", "16" })
+    int depth;
+
+    Class<?>[] types;
+
+    @Setup
+    public void setUp() {
+        Nodes.graph = new Nodes.Graph(size, Math.min(depth, size));
+        types = new Class<?>[size];
+        System.arraycopy(Nodes.TYPES, 0, types, 0, size);
+    }
+
+    @Benchmark
+    public ModuleManager registerDependentsFirst() {
+        ModuleManager manager = ModuleManager.create();
+        for (int i = size - 1; i >= 0; i--) {
+            manager.registerModule(types[i]);
+        }
+        return manager;
+    }
+
+    @Benchmark
+    public ModuleManager registerDependenciesFirst() {
+        ModuleManager manager = ModuleManager.create();
+        for (Class<?> type : types) {
+            manager.registerModule(type);
+        }
+        return manager;
+    }
+
+    @Benchmark
+    public ModuleManager registerBulk() {
+        ModuleManager manager = ModuleManager.create();
+        manager.registerModules(Arrays.asList(types));
+        return manager;
+    }
+}
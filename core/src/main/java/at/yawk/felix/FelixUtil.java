@@ -0,0 +1,24 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix;
+
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * @author Jonas Konrad (yawkat)
+ * @deprecated Internal use only.
+ */
+@Deprecated
+public class FelixUtil {
+    /**
+     * Return all superclasses and interfaces of the given type, including the type itself.
+     */
+    public static Stream<Class<?>> getSuperClasses(@Nullable Class<?> of) {
+        return of == null ? Stream.empty() : TypeHierarchy.of(of).getTypes().stream();
+    }
+}
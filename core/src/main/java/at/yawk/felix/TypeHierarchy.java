@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.Immutable;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The linearized supertypes of a class, computed once per class and cached. For internal use by the event and module
+ * subsystems.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@Immutable
+public final class TypeHierarchy {
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private static final ClassValue<TypeHierarchy> hierarchies = new ClassValue<TypeHierarchy>() {
+        @Override
+        protected TypeHierarchy computeValue(Class<?> type) {
+            return new TypeHierarchy(type);
+        }
+    };
+
+    /**
+     * The class itself.
+     */
+    @Getter private final Class<?> type;
+    /**
+     * Unique ID of the class. IDs are assigned on first use, supertypes always before their subtypes, so ordering by
+     * ID is a total order consistent with the hierarchy.
+     */
+    @Getter private final int id;
+    /**
+     * The class itself followed by all its superclasses and interfaces without duplicates: first the hierarchy of the
+     * superclass, then the hierarchies of the interfaces in declaration order.
+     */
+    @Getter private final List<Class<?>> types;
+
+    private TypeHierarchy(Class<?> type) {
+        this.type = type;
+
+        Set<Class<?>> types = new LinkedHashSet<>();
+        types.add(type);
+        if (type.getSuperclass() != null) {
+            types.addAll(of(type.getSuperclass()).types);
+        }
+        for (Class<?> itf : type.getInterfaces()) {
+            types.addAll(of(itf).types);
+        }
+        this.types = Collections.unmodifiableList(Arrays.asList(types.toArray(new Class<?>[types.size()])));
+
+        // after the supertypes, which got theirs above
+        this.id = nextId.getAndIncrement();
+    }
+
+    /**
+     * Get the hierarchy of the given class.
+     */
+    @NonNull
+    public static TypeHierarchy of(@NonNull Class<?> type) {
+        return hierarchies.get(type);
+    }
+}
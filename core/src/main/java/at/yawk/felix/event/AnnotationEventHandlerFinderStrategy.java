@@ -6,7 +6,7 @@
 
 package at.yawk.felix.event;
 
-import at.yawk.felix.FelixUtil;
+import at.yawk.felix.TypeHierarchy;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.Arrays;
@@ -24,31 +24,37 @@ abstract class AnnotationEventHandlerFinderStrategy<A extends Annotation> implem
     static final EventHandlerFinderStrategy instance =
             new AnnotationEventHandlerFinderStrategy<Subscribe>(Subscribe.class) {
                 @Override
-                protected EventHandler<?> makeHandler(Subscribe annotation, Object object, Method method) {
+                protected HandlerTemplate makeTemplate(Subscribe annotation, Method method) {
                     Class<?>[] parameterTypes = method.getParameterTypes();
                     assert parameterTypes.length == 1 : method;
-                    EventHandler.ThrowingConsumer<Object> consumer;
-                    if (annotation.parallel()) {
-                        consumer = event -> method.invoke(object, event);
-                    } else {
-                        consumer = event -> {
-                            synchronized (method) {
-                                method.invoke(object, event);
-                            }
-                        };
-                    }
-                    return new EventHandler<>(parameterTypes[0], consumer, annotation.priority());
+                    return new HandlerTemplate(parameterTypes[0],
+                                               annotation.priority(),
+                                               annotation.parallel(),
+                                               HandlerInvokers.binder(method));
                 }
             };
 
     private final Class<A> marker;
 
+    /**
+     * Handler templates of each listener class, so subscribing another instance of a known class only needs to bind
+     * them.
+     */
+    private final ClassValue<HandlerTemplate[]> templates = new ClassValue<HandlerTemplate[]>() {
+        @Override
+        protected HandlerTemplate[] computeValue(Class<?> type) {
+            return findTemplates(type);
+        }
+    };
+
     @NonNull
     @Override
-    @SuppressWarnings("deprecation")
     public Stream<EventHandler<?>> findEventHandlers(@NonNull Object in) {
-        Stream<Class<?>> classes = FelixUtil.getSuperClasses(in.getClass());
-        return classes.flatMap(c -> Stream.of(c.getDeclaredMethods()))
+        return Stream.of(templates.get(in.getClass())).map(template -> template.bind(in));
+    }
+
+    private HandlerTemplate[] findTemplates(Class<?> type) {
+        return TypeHierarchy.of(type).getTypes().stream().flatMap(c -> Stream.of(c.getDeclaredMethods()))
                 // search for subscribe annotations
                 .filter(m -> m.isAnnotationPresent(marker))
                         // filter overridden methods so they don't appear twice
@@ -58,15 +64,19 @@ abstract class AnnotationEventHandlerFinderStrategy<A extends Annotation> implem
                 .distinct()
                         // unwrap
                 .map(wrapper -> wrapper.method)
-                        // create event handlers
+                        // create handler templates
                 .map(method -> {
                     method.setAccessible(true);
                     A annotation = method.getAnnotation(marker);
-                    return makeHandler(annotation, in, method);
-                });
+                    return makeTemplate(annotation, method);
+                })
+                .toArray(HandlerTemplate[]::new);
     }
 
-    protected abstract EventHandler<?> makeHandler(A annotation, Object object, Method method);
+    /**
+     * Create the template for a handler method. Called once per listener class and method.
+     */
+    protected abstract HandlerTemplate makeTemplate(A annotation, Method method);
 
     /**
      * Helper class that
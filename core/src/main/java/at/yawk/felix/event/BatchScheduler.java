@@ -0,0 +1,192 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Buffers the events of the batch subscribers of a bus into windows and delivers the windows on one shared daemon
+ * thread. Windows are closed once they reach their maximum size or their maximum delay after their first event.
+ * Since all windows are delivered on the same thread, each batch handler is called serially and in order.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+final class BatchScheduler implements Drainable {
+    private final ScheduledThreadPoolExecutor executor;
+    private final ExceptionHandler exceptionHandler;
+
+    private final Set<Buffer> buffers = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown = false;
+
+    BatchScheduler(@NonNull ExceptionHandler exceptionHandler, @NonNull ThreadFactory threadFactory) {
+        this.exceptionHandler = exceptionHandler;
+        this.executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Create the buffer of a new batch subscriber.
+     */
+    Buffer create(int maxSize, long maxDelayNanos, @NonNull EventHandler.ThrowingConsumer<List<Object>> handler) {
+        Buffer buffer = new Buffer(maxSize, maxDelayNanos, handler);
+        buffers.add(buffer);
+        if (shutdown) {
+            // raced with shutdown
+            buffer.close();
+        }
+        return buffer;
+    }
+
+    /**
+     * Run a task on the delivery thread after the given delay, or right away if this scheduler was shut down. Also
+     * used to end the windows of coalesced events.
+     */
+    void schedule(@NonNull Runnable task, long delayNanos) {
+        try {
+            executor.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Deliver the open window of a buffer and stop buffering its events.
+     */
+    void remove(@NonNull Buffer buffer) {
+        buffers.remove(buffer);
+        buffer.close();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        // flush before shutting down the executor so the last windows are still delivered in order
+        buffers.forEach(Buffer::close);
+        executor.shutdown();
+        // open windows are flushed by their owners on shutdown, so pending timeouts would only delay termination. The
+        // executor's own policy for this can't be used because on Java 8 it also drops queued deliveries
+        for (Runnable task : executor.getQueue()) {
+            ScheduledFuture<?> future = (ScheduledFuture<?>) task;
+            if (future.getDelay(TimeUnit.NANOSECONDS) > 0) { future.cancel(false); }
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    @RequiredArgsConstructor
+    final class Buffer implements EventHandler.ThrowingConsumer<Object> {
+        private final int maxSize;
+        private final long maxDelayNanos;
+        private final EventHandler.ThrowingConsumer<List<Object>> handler;
+
+        private volatile EventHandler<?> owner = null;
+
+        @GuardedBy("this") private List<Object> window = new ArrayList<>();
+        @GuardedBy("this") private ScheduledFuture<?> timeout = null;
+        @GuardedBy("this") private boolean closed = false;
+
+        /**
+         * Set the handler exceptions are reported for.
+         */
+        void attach(@NonNull EventHandler<?> owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void consume(Object event) {
+            List<Object> full = null;
+            synchronized (this) {
+                if (closed) {
+                    full = new ArrayList<>(1);
+                    full.add(event);
+                } else {
+                    window.add(event);
+                    if (window.size() >= maxSize) {
+                        full = takeWindow();
+                    } else if (window.size() == 1) {
+                        List<Object> opened = window;
+                        timeout = executor.schedule(() -> flush(opened), maxDelayNanos, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+            if (full != null) { submit(full); }
+        }
+
+        /**
+         * Flush the given window if it is still open.
+         */
+        private void flush(List<Object> expected) {
+            List<Object> taken;
+            synchronized (this) {
+                if (window != expected) { return; }
+                taken = takeWindow();
+            }
+            // we're on the delivery thread already
+            deliver(taken);
+        }
+
+        /**
+         * Deliver the open window and deliver all further events immediately.
+         */
+        void close() {
+            List<Object> taken;
+            synchronized (this) {
+                if (closed) { return; }
+                closed = true;
+                if (window.isEmpty()) { return; }
+                taken = takeWindow();
+            }
+            submit(taken);
+        }
+
+        @GuardedBy("this")
+        private List<Object> takeWindow() {
+            List<Object> taken = window;
+            window = new ArrayList<>();
+            if (timeout != null) {
+                timeout.cancel(false);
+                timeout = null;
+            }
+            return taken;
+        }
+
+        private void submit(List<Object> batch) {
+            try {
+                executor.execute(() -> deliver(batch));
+            } catch (RejectedExecutionException e) {
+                // shut down, deliver on the caller instead of losing the events
+                deliver(batch);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void deliver(List<Object> batch) {
+            try {
+                handler.consume(batch);
+            } catch (Throwable t) {
+                try {
+                    exceptionHandler.onException(batch, t, (EventHandler<Object>) owner);
+                } catch (Throwable u) {
+                    // we can't do much more
+                    //noinspection CallToPrintStackTrace
+                    u.printStackTrace();
+                }
+            }
+        }
+    }
+}
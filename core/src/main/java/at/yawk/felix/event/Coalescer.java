@@ -0,0 +1,95 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Collapses asynchronously posted events of one coalesced type: the first event of a key opens a window, events of
+ * the same key posted before the window ends replace the pending one, and only the newest event is delivered once the
+ * window ends.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+@RequiredArgsConstructor
+final class Coalescer implements Drainable {
+    @NonNull private final Function<Object, ?> keyExtractor;
+    private final long windowNanos;
+    @NonNull private final BatchScheduler timer;
+    /**
+     * Called with the newest event of a key once its window ends.
+     */
+    @NonNull private final Consumer<Pending> delivery;
+    /**
+     * Called with events that were replaced by a newer one.
+     */
+    @NonNull private final Consumer<Pending> drop;
+
+    private final ConcurrentMap<Object, Pending> pending = new ConcurrentHashMap<>();
+
+    /**
+     * The coalescing key of the given event, or null if it should not be coalesced.
+     */
+    Object key(Object event) {
+        return keyExtractor.apply(event);
+    }
+
+    /**
+     * Add an event to the window of its key, opening one if there is none.
+     */
+    void offer(@NonNull Object key, @NonNull Pending event) {
+        Pending[] replaced = { null };
+        pending.merge(key, event, (previous, next) -> {
+            replaced[0] = previous;
+            return next;
+        });
+        if (replaced[0] == null) {
+            timer.schedule(() -> flush(key), windowNanos);
+        } else {
+            drop.accept(replaced[0]);
+        }
+    }
+
+    private void flush(Object key) {
+        Pending latest = pending.remove(key);
+        if (latest != null) { delivery.accept(latest); }
+    }
+
+    /**
+     * End all open windows now.
+     */
+    @Override
+    public void shutdown() {
+        pending.keySet().forEach(this::flush);
+    }
+
+    /**
+     * Delivery is tracked by the bus like any other asynchronous post.
+     */
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return true;
+    }
+
+    /**
+     * An event waiting for the end of its window, together with the future returned by postAsync.
+     */
+    @RequiredArgsConstructor
+    static final class Pending {
+        final Object event;
+        final CompletableFuture<Object> future;
+    }
+}
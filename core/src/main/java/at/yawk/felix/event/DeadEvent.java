@@ -0,0 +1,27 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import lombok.Value;
+
+/**
+ * Posted in place of events that no handler was called for, if enabled using
+ * {@link EventBus#setDeliverDeadEvents(boolean)}. Subscribe to it to find events that are posted but never handled.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@Value
+public class DeadEvent {
+    /**
+     * The bus the event was posted on.
+     */
+    EventBus source;
+    /**
+     * The event that had no handlers.
+     */
+    Object event;
+}
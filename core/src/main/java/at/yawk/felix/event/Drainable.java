@@ -0,0 +1,28 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous part of an EventBus that is shut down and drained together with it.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+interface Drainable {
+    /**
+     * Stop accepting new events. Already accepted events are still delivered.
+     */
+    void shutdown();
+
+    /**
+     * Wait until all accepted events have been delivered.
+     *
+     * @return false if the timeout elapsed first.
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+}
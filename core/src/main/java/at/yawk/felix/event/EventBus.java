@@ -0,0 +1,673 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import at.yawk.felix.TypeHierarchy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Synchronized;
+
+/**
+ * Event bus.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@RequiredArgsConstructor(staticName = "create")
+public class EventBus {
+    private final ExceptionHandler exceptionHandler;
+
+    private final HandlerRegistry registry = new HandlerRegistry();
+
+    /**
+     * Executor used by postAsync.
+     */
+    private volatile Executor asyncExecutor = ForkJoinPool.commonPool();
+    /**
+     * Executor mailboxes of serial handlers deliver on, always the current async executor.
+     */
+    private final Executor mailboxExecutor = task -> asyncExecutor.execute(task);
+
+    private final InFlightTracker inFlight = new InFlightTracker();
+
+    /**
+     * Asynchronous pipelines of this bus that are shut down together with it.
+     */
+    private final List<Drainable> drainables = new CopyOnWriteArrayList<>();
+
+    private volatile EventBusMetrics metrics = EventBusMetrics.NONE;
+
+    /**
+     * Whether events without handlers are posted again wrapped in a DeadEvent.
+     */
+    private volatile boolean deliverDeadEvents = false;
+
+    /**
+     * Exception handler given to handlers that report their own exceptions, such as mailboxes of serial handlers.
+     */
+    private final ExceptionHandler reportingExceptionHandler = new ExceptionHandler() {
+        @Override
+        public <Event> void onException(Event event, Throwable throwable, EventHandler<? super Event> handler) {
+            handleException(event, throwable, handler);
+        }
+    };
+
+    /**
+     * Delivery thread of batch subscribers and timer of coalescing windows, created on first use.
+     */
+    private volatile BatchScheduler batchScheduler = null;
+
+    /**
+     * Coalescing settings of the types passed to {@link #coalesce(Class, Function, long, TimeUnit)}.
+     */
+    private final ConcurrentMap<Class<?>, Coalescer> coalescers = new ConcurrentHashMap<>();
+
+    private final LongAdder coalescedEvents = new LongAdder();
+
+    private final List<EventHandlerFinderStrategy> discoveryStrategies = new CopyOnWriteArrayList<>();
+
+    {
+        discoveryStrategies.add(GeneratedEventHandlerFinderStrategy.instance);
+        discoveryStrategies.add(GuavaSubscribeFinderStrategy.instance);
+    }
+
+    public static EventBus create() { return create(ExceptionHandler.PRINT_TRACE); }
+
+    public void addEventHandlerFinderStrategy(@NonNull EventHandlerFinderStrategy strategy) {
+        discoveryStrategies.add(0, strategy);
+    }
+
+    /**
+     * Set the metrics listener of this bus. Defaults to {@link EventBusMetrics#NONE}, which disables instrumentation.
+     */
+    public void setMetrics(@NonNull EventBusMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Enable or disable dead event delivery: if enabled, events that no handler is called for are posted again wrapped
+     * in a {@link DeadEvent}. Meant for diagnostics, disabled by default.
+     */
+    public void setDeliverDeadEvents(boolean deliverDeadEvents) {
+        this.deliverDeadEvents = deliverDeadEvents;
+    }
+
+    /**
+     * Set the executor postAsync dispatches events on and busy serial handlers ({@code parallel = false}) catch up on
+     * queued events on. Defaults to the common ForkJoinPool.
+     * <p>
+     * For handlers that block on I/O, a thread-per-task executor is a better fit; on Java 21 and newer,
+     * {@code Executors.newVirtualThreadPerTaskExecutor()} runs each event on its own virtual thread.
+     */
+    public void setAsyncExecutor(@NonNull Executor executor) {
+        this.asyncExecutor = executor;
+    }
+
+    /**
+     * Post an event. Event handler priorities are followed across all supertypes of the event; handlers of the same
+     * priority are called in the order of the type hierarchy, most specific type first. Serial handlers
+     * ({@code parallel = false}) are the exception while another thread is calling them: the event is then queued for
+     * them and they are called on the async executor, in the order events were queued but possibly after this method
+     * returned.
+     * <p>
+     * Once an event class has been posted, posting it again does not allocate unless its handlers do.
+     */
+    public <Event> Event post(@NonNull Event event) {
+        return post(event, false);
+    }
+
+    /**
+     * Post an event in a parallel mode. If we are in a ForkJoinPool, event processing will be done across its threads.
+     * Priorities might not be honoured.
+     */
+    public <Event> Event postParallel(@NonNull Event event) {
+        return post(event, true);
+    }
+
+    /**
+     * Post a batch of events. The events are grouped by class and the handlers of each class are resolved once; each
+     * handler is then called for all events of the group before the next handler runs. Handlers are called in
+     * priority order like for {@link #post(Object)}, but unlike posting the events one by one, a handler sees later
+     * events before lower-priority handlers see earlier ones.
+     * <p>
+     * Events with keyed handlers, and all events while metrics are enabled, are posted one at a time.
+     */
+    public void postAll(@NonNull Collection<?> events) {
+        postAll(events.toArray(), false);
+    }
+
+    /**
+     * Post a batch of events.
+     *
+     * @see #postAll(java.util.Collection)
+     */
+    public void postAll(@NonNull Object[] events) {
+        postAll(events, false);
+    }
+
+    /**
+     * Post a batch of events, splitting the events of each handler across the threads of the current ForkJoinPool.
+     * Handlers are still called one after another in priority order.
+     *
+     * @see #postAll(java.util.Collection)
+     */
+    public void postAllParallel(@NonNull Collection<?> events) {
+        postAll(events.toArray(), true);
+    }
+
+    /**
+     * Post a batch of events in parallel.
+     *
+     * @see #postAllParallel(java.util.Collection)
+     */
+    public void postAllParallel(@NonNull Object[] events) {
+        postAll(events, true);
+    }
+
+    /**
+     * Post an event asynchronously using the async executor. All handlers of the event are called in priority order
+     * on one task; different events may be processed concurrently.
+     *
+     * @return A future that is completed with the event once all handlers have been called, except for serial
+     * handlers ({@code parallel = false}) that were busy, which the event may only have been queued for at that
+     * point. Handler exceptions are passed to the exception handler and do not fail the future.
+     * @throws java.util.concurrent.RejectedExecutionException if this bus was shut down or the executor rejected the
+     *                                                         task.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public <Event> CompletableFuture<Event> postAsync(@NonNull Event event) {
+        if (!inFlight.enter()) { throw new RejectedExecutionException("EventBus has been shut down"); }
+        CompletableFuture<Event> future = new CompletableFuture<>();
+        Coalescer.Pending pending = new Coalescer.Pending(event, (CompletableFuture<Object>) future);
+        try {
+            Coalescer coalescer = findCoalescer(event.getClass());
+            Object key = coalescer == null ? null : coalescer.key(event);
+            if (key == null) {
+                executeAsync(pending);
+            } else {
+                coalescer.offer(key, pending);
+            }
+        } catch (Throwable t) {
+            inFlight.exit();
+            throw t;
+        }
+        return future;
+    }
+
+    private void executeAsync(Coalescer.Pending pending) {
+        asyncExecutor.execute(() -> {
+            try {
+                doPost(pending.event, false);
+                pending.future.complete(pending.event);
+            } catch (Throwable t) {
+                pending.future.completeExceptionally(t);
+            } finally {
+                inFlight.exit();
+            }
+        });
+    }
+
+    /**
+     * Coalesce asynchronously posted events of the given type (including subtypes): the first event of a key opens a
+     * window of the given length, and only the newest event of the key posted before the window ends is delivered.
+     * The futures of dropped events complete with the dropped event once it is replaced. Events with a null key and
+     * synchronously posted events are not coalesced.
+     *
+     * @throws java.lang.IllegalStateException if the type is already coalesced.
+     * @see #getCoalescedEventCount()
+     */
+    @SuppressWarnings("unchecked")
+    public <Event> void coalesce(@NonNull Class<Event> type,
+                                 @NonNull Function<? super Event, ?> keyExtractor,
+                                 long window,
+                                 @NonNull TimeUnit unit) {
+        if (window < 0) { throw new IllegalArgumentException("Window must not be negative"); }
+        // events passed to the extractor are always of the coalesced type
+        Coalescer coalescer = new Coalescer((Function<Object, ?>) keyExtractor, unit.toNanos(window), batchScheduler(),
+                                            this::deliverCoalesced, this::dropCoalesced);
+        if (coalescers.putIfAbsent(type, coalescer) != null) {
+            throw new IllegalStateException(type + " is already coalesced");
+        }
+        register(coalescer);
+    }
+
+    /**
+     * The number of asynchronously posted events that were dropped by coalescing so far.
+     */
+    public long getCoalescedEventCount() {
+        return coalescedEvents.sum();
+    }
+
+    private Coalescer findCoalescer(Class<?> eventClass) {
+        if (coalescers.isEmpty()) { return null; }
+        for (Class<?> type : TypeHierarchy.of(eventClass).getTypes()) {
+            Coalescer coalescer = coalescers.get(type);
+            if (coalescer != null) { return coalescer; }
+        }
+        return null;
+    }
+
+    private void deliverCoalesced(Coalescer.Pending pending) {
+        try {
+            executeAsync(pending);
+        } catch (Throwable t) {
+            pending.future.completeExceptionally(t);
+            inFlight.exit();
+        }
+    }
+
+    private void dropCoalesced(Coalescer.Pending pending) {
+        coalescedEvents.increment();
+        metrics.onCoalesced(pending.event.getClass());
+        pending.future.complete(pending.event);
+        inFlight.exit();
+    }
+
+    /**
+     * Create a pipeline that delivers events to this bus from a preallocated ring buffer on a dedicated daemon consumer
+     * thread. The pipeline is shut down together with this bus.
+     *
+     * @param bufferSize Number of slots, must be a power of two.
+     */
+    @NonNull
+    public RingBufferPipeline createRingBuffer(int bufferSize, @NonNull WaitStrategy waitStrategy) {
+        return createRingBuffer(bufferSize, waitStrategy, runnable -> {
+            Thread thread = new Thread(runnable, "Felix ring buffer consumer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Create a pipeline that delivers events to this bus from a preallocated ring buffer on a consumer thread created
+     * by the given factory. The pipeline is shut down together with this bus.
+     *
+     * @param bufferSize Number of slots, must be a power of two.
+     */
+    @NonNull
+    public RingBufferPipeline createRingBuffer(int bufferSize,
+                                               @NonNull WaitStrategy waitStrategy,
+                                               @NonNull ThreadFactory threadFactory) {
+        return createRingBuffer(bufferSize, 1, waitStrategy, threadFactory);
+    }
+
+    /**
+     * Create a pipeline that delivers events to this bus from a preallocated ring buffer on the given number of
+     * consumer threads created by the given factory. With more than one consumer, events are not delivered in order.
+     * The pipeline is shut down together with this bus.
+     *
+     * @param bufferSize Number of slots, must be a power of two.
+     */
+    @NonNull
+    public RingBufferPipeline createRingBuffer(int bufferSize,
+                                               int consumers,
+                                               @NonNull WaitStrategy waitStrategy,
+                                               @NonNull ThreadFactory threadFactory) {
+        return register(RingBufferPipeline.start(this, bufferSize, consumers, waitStrategy, threadFactory));
+    }
+
+    /**
+     * Create a pipeline that delivers events to this bus in parallel on one daemon worker thread per partition while
+     * keeping the order of events with the same partition key. The pipeline is shut down together with this bus.
+     *
+     * @param partitions   Number of partitions and worker threads, usually the number of available processors.
+     * @param bufferSize   Ring buffer size of each partition, must be a power of two.
+     * @param partitionKey Returns the partition key of an event published without explicit key.
+     */
+    @NonNull
+    public PartitionedPipeline createPartitionedPipeline(int partitions,
+                                                         int bufferSize,
+                                                         @NonNull WaitStrategy waitStrategy,
+                                                         @NonNull Function<Object, ?> partitionKey) {
+        if (partitions <= 0) { throw new IllegalArgumentException("Partition count must be positive"); }
+        RingBufferPipeline[] pipelines = new RingBufferPipeline[partitions];
+        for (int i = 0; i < partitions; i++) {
+            String name = "Felix partition worker " + i;
+            pipelines[i] = RingBufferPipeline.start(this, bufferSize, 1, waitStrategy, runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return register(new PartitionedPipeline(pipelines, partitionKey));
+    }
+
+    private <D extends Drainable> D register(D drainable) {
+        drainables.add(drainable);
+        if (isShutdown()) {
+            // raced with shutdown, don't leave the pipeline running
+            drainable.shutdown();
+            throw new RejectedExecutionException("EventBus has been shut down");
+        }
+        return drainable;
+    }
+
+    /**
+     * Stop accepting asynchronous posts and shut down all pipelines of this bus. Events that were already accepted are
+     * still delivered, use {@link #awaitTermination(long, java.util.concurrent.TimeUnit)} to wait for them.
+     * Synchronous posts are not affected.
+     */
+    public void shutdown() {
+        inFlight.shutdown();
+        drainables.forEach(Drainable::shutdown);
+    }
+
+    /**
+     * Returns whether {@link #shutdown()} has been called.
+     */
+    public boolean isShutdown() {
+        return inFlight.isShutdown();
+    }
+
+    /**
+     * Wait until all accepted asynchronous events have been delivered, all events queued for serial handlers have
+     * been handled and all pipelines have terminated.
+     *
+     * @return false if the timeout elapsed before that.
+     */
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!inFlight.awaitQuiescence(timeout, unit)) { return false; }
+        for (Drainable drainable : drainables) {
+            if (!drainable.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) { return false; }
+        }
+        return true;
+    }
+
+    private <Event> Event post(@NonNull Event event, boolean parallel) {
+        return doPost(event, parallel);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <Event> Event doPost(@NonNull Event event, boolean parallel) {
+        HandlerRegistry.Dispatch dispatch = registry.getDispatch(event.getClass());
+        // fast reject: nothing is subscribed anywhere in the hierarchy of the event class
+        if (dispatch.none) { return onDeadEvent(event); }
+        EventHandler[] handlers = dispatch.indexes.length == 0 ? dispatch.handlers : dispatch.select(event);
+        if (handlers.length == 0) { return onDeadEvent(event); }
+        EventBusMetrics metrics = this.metrics;
+        if (metrics != EventBusMetrics.NONE) {
+            doPostInstrumented(event, handlers, parallel, metrics);
+        } else if (parallel) {
+            // ignore priority
+            Arrays.stream(handlers).parallel().forEach(handler -> dispatch(event, handler));
+        } else {
+            // follow priority. This path must stay allocation-free, see EventBusTest#testPostDoesNotAllocate
+            for (EventHandler handler : handlers) {
+                dispatch(event, handler);
+            }
+        }
+        return event;
+    }
+
+    private void postAll(Object[] events, boolean parallel) {
+        if (metrics != EventBusMetrics.NONE) {
+            for (Object event : events) {
+                doPost(event, parallel);
+            }
+            return;
+        }
+        if (events.length == 0) { return; }
+
+        // bursts are usually of one class, don't group those
+        Class<?> first = events[0].getClass();
+        Map<Class<?>, List<Object>> byClass = null;
+        for (int i = 1; i < events.length; i++) {
+            if (events[i].getClass() != first) {
+                byClass = new LinkedHashMap<>();
+                for (Object event : events) {
+                    byClass.computeIfAbsent(event.getClass(), c -> new ArrayList<>()).add(event);
+                }
+                break;
+            }
+        }
+        if (byClass == null) {
+            postBatch(first, Arrays.asList(events), parallel);
+        } else {
+            byClass.forEach((type, batch) -> postBatch(type, batch, parallel));
+        }
+    }
+
+    /**
+     * Post events of the same class, handler by handler.
+     */
+    @SuppressWarnings("unchecked")
+    private void postBatch(Class<?> type, List<Object> batch, boolean parallel) {
+        HandlerRegistry.Dispatch dispatch = registry.getDispatch(type);
+        if (dispatch.none) {
+            batch.forEach(this::onDeadEvent);
+            return;
+        }
+        if (dispatch.indexes.length != 0) {
+            // handlers depend on the key of each event
+            batch.forEach(event -> doPost(event, parallel));
+            return;
+        }
+        for (EventHandler handler : dispatch.handlers) {
+            if (parallel) {
+                batch.parallelStream().forEach(event -> dispatch(event, handler));
+            } else {
+                for (Object event : batch) {
+                    dispatch(event, handler);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle an event that had no handlers.
+     */
+    private <Event> Event onDeadEvent(Event event) {
+        EventBusMetrics metrics = this.metrics;
+        if (metrics != EventBusMetrics.NONE) {
+            metrics.onPost(event.getClass(), 0);
+        }
+        // dead events that are dead themselves are dropped
+        if (deliverDeadEvents && !(event instanceof DeadEvent)) {
+            doPost(new DeadEvent(this, event), false);
+        }
+        return event;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <Event> void doPostInstrumented(Event event,
+                                            EventHandler[] handlers,
+                                            boolean parallel,
+                                            EventBusMetrics metrics) {
+        Class<?> eventClass = event.getClass();
+        metrics.onPost(eventClass, handlers.length);
+        if (!metrics.sampleTiming()) {
+            if (parallel) {
+                Arrays.stream(handlers).parallel().forEach(handler -> dispatch(event, handler));
+            } else {
+                for (EventHandler handler : handlers) {
+                    dispatch(event, handler);
+                }
+            }
+            return;
+        }
+        Consumer<EventHandler> timed = handler -> {
+            long start = System.nanoTime();
+            dispatch(event, handler);
+            metrics.onHandlerCompleted(eventClass, handler, System.nanoTime() - start);
+        };
+        if (parallel) {
+            Arrays.stream(handlers).parallel().forEach(timed);
+        } else {
+            for (EventHandler handler : handlers) {
+                timed.accept(handler);
+            }
+        }
+    }
+
+    /**
+     * Consume the event using the given handler, handling any errors.
+     */
+    private <Event> void dispatch(Event event, EventHandler<? super Event> handler) {
+        try {
+            handler.getHandler().consume(event);
+        } catch (Throwable t) {
+            handleException(event, t, handler);
+        }
+    }
+
+    private <Event> void handleException(Event event, Throwable throwable, EventHandler<? super Event> handler) {
+        try {
+            metrics.onException(event.getClass(), handler, throwable);
+            exceptionHandler.onException(event, throwable, handler);
+        } catch (Throwable u) {
+            // we can't do much more
+            //noinspection CallToPrintStackTrace
+            u.printStackTrace();
+        }
+    }
+
+    /**
+     * Use the registered strategies to add any event handlers in the given object.
+     */
+    @NonNull
+    public SubscribeHandle subscribe(@NonNull Object handler) {
+        List<EventHandler<?>> found = new ArrayList<>();
+        discoveryStrategies.stream()
+                           .flatMap(strategy -> strategy.findEventHandlers(handler))
+                           .sequential()
+                           .forEach(found::add);
+        return subscribeAll(found);
+    }
+
+    /**
+     * Dynamically subscribe to an event.
+     */
+    @NonNull
+    public <Event> SubscribeHandle subscribe(@NonNull Class<Event> type,
+                                             @NonNull EventHandler.ThrowingConsumer<? super Event> handler) {
+        return subscribe(type, handler, EventHandler.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Dynamically subscribe to an event.
+     */
+    @NonNull
+    public <Event> SubscribeHandle subscribe(@NonNull Class<Event> type,
+                                             @NonNull EventHandler.ThrowingConsumer<? super Event> handler,
+                                             int priority) {
+        return subscribeEventHandler(new EventHandler<>(type, handler, priority));
+    }
+
+    /**
+     * Dynamically subscribe to an event, receiving events in batches. Events are buffered per subscriber and the
+     * buffered window is delivered once it holds maxSize events or maxDelay after its first event, whichever comes
+     * first. Windows are delivered on a daemon thread shared by all batch subscribers of this bus, so the handler is
+     * never called concurrently. Unsubscribing or shutting down the bus delivers the open window.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public <Event> SubscribeHandle subscribeBatch(@NonNull Class<Event> type,
+                                                  int maxSize,
+                                                  long maxDelay,
+                                                  @NonNull TimeUnit unit,
+                                                  @NonNull EventHandler.ThrowingConsumer<? super List<Event>> handler) {
+        if (maxSize <= 0) { throw new IllegalArgumentException("Batch size must be positive"); }
+        if (maxDelay < 0) { throw new IllegalArgumentException("Batch delay must not be negative"); }
+        BatchScheduler scheduler = batchScheduler();
+        // the buffer only ever receives events of the subscribed type
+        BatchScheduler.Buffer buffer = scheduler.create(
+                maxSize, unit.toNanos(maxDelay), (EventHandler.ThrowingConsumer) handler);
+        EventHandler<Event> eventHandler = new EventHandler<>(type, buffer, EventHandler.DEFAULT_PRIORITY);
+        buffer.attach(eventHandler);
+        SubscribeHandle handle = subscribeEventHandler(eventHandler);
+        return () -> {
+            handle.unsubscribe();
+            scheduler.remove(buffer);
+        };
+    }
+
+    private BatchScheduler batchScheduler() {
+        BatchScheduler scheduler = batchScheduler;
+        return scheduler == null ? createBatchScheduler() : scheduler;
+    }
+
+    @Synchronized
+    private BatchScheduler createBatchScheduler() {
+        if (batchScheduler == null) {
+            batchScheduler = register(new BatchScheduler(reportingExceptionHandler, runnable -> {
+                Thread thread = new Thread(runnable, "Felix batch delivery");
+                thread.setDaemon(true);
+                return thread;
+            }));
+        }
+        return batchScheduler;
+    }
+
+    /**
+     * Dynamically subscribe to events of the given type whose key equals the given key. Keyed handlers are stored in a
+     * hash index per type and key extractor, so posting an event only calls the handlers registered for its key (in
+     * addition to unkeyed handlers) no matter how many other keys have handlers.
+     * <p>
+     * Pass the same extractor instance for all subscriptions that use the same key: handlers with different extractor
+     * instances end up in different indexes, each of which is queried on every post.
+     *
+     * @param keyExtractor Returns the key of an event. Events with a null key only reach unkeyed handlers.
+     */
+    @NonNull
+    public <Event> SubscribeHandle subscribe(@NonNull Class<Event> type,
+                                             @NonNull Function<? super Event, ?> keyExtractor,
+                                             @NonNull Object key,
+                                             @NonNull EventHandler.ThrowingConsumer<? super Event> handler) {
+        return subscribe(type, keyExtractor, key, handler, EventHandler.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Dynamically subscribe to events of the given type whose key equals the given key.
+     *
+     * @see #subscribe(Class, java.util.function.Function, Object, EventHandler.ThrowingConsumer)
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public <Event> SubscribeHandle subscribe(@NonNull Class<Event> type,
+                                             @NonNull Function<? super Event, ?> keyExtractor,
+                                             @NonNull Object key,
+                                             @NonNull EventHandler.ThrowingConsumer<? super Event> handler,
+                                             int priority) {
+        EventHandler<Event> eventHandler = new EventHandler<>(type, handler, priority);
+        // events passed to the extractor are always of the subscribed type
+        Function<Object, ?> extractor = (Function<Object, ?>) keyExtractor;
+        registry.addKeyed(type, extractor, key, eventHandler);
+        return () -> registry.removeKeyed(type, extractor, key, eventHandler);
+    }
+
+    /**
+     * Dynamically subscribe to an event.
+     */
+    @NonNull
+    public SubscribeHandle subscribeEventHandler(@NonNull EventHandler<?> eventHandler) {
+        return subscribeAll(Collections.singletonList(eventHandler));
+    }
+
+    /**
+     * Subscribe all given event handlers at once. This is considerably cheaper than subscribing them one by one as
+     * the handlers of each event type are only republished once. The returned handle unsubscribes all of them at once
+     * as well.
+     */
+    @NonNull
+    public SubscribeHandle subscribeAll(@NonNull Collection<? extends EventHandler<?>> eventHandlers) {
+        // copy so later changes to the given collection don't affect unsubscription
+        List<EventHandler<?>> subscribed = new ArrayList<>(eventHandlers);
+        for (EventHandler<?> handler : subscribed) {
+            if (handler.getHandler() instanceof Mailbox) {
+                ((Mailbox) handler.getHandler()).attach(reportingExceptionHandler, handler, inFlight, mailboxExecutor);
+            }
+        }
+        registry.add(subscribed);
+        return () -> registry.remove(subscribed);
+    }
+}
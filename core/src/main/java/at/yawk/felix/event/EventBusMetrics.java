@@ -0,0 +1,56 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Listener for instrumenting an EventBus, see {@link EventBus#setMetrics(EventBusMetrics)}. Methods are called on the
+ * posting (or handling) thread, so implementations must be thread safe and should be cheap.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+public interface EventBusMetrics {
+    /**
+     * Metrics implementation that records nothing. When this is set, the bus skips instrumentation entirely.
+     */
+    public static final EventBusMetrics NONE = new EventBusMetrics() {};
+
+    /**
+     * Called once for every posted event before its handlers are called.
+     *
+     * @param handlerCount The number of handlers the event is dispatched to.
+     */
+    default void onPost(Class<?> eventClass, int handlerCount) {}
+
+    /**
+     * Called once per post to decide whether the handler calls of this post should be timed. Timing every call can
+     * distort the measured latencies of very cheap handlers, so implementations may only sample some posts.
+     */
+    default boolean sampleTiming() {
+        return false;
+    }
+
+    /**
+     * Called after a handler was called for a post that was selected by {@link #sampleTiming()}.
+     *
+     * @param nanos How long the handler took, including any exception handling.
+     */
+    default void onHandlerCompleted(Class<?> eventClass, EventHandler<?> handler, long nanos) {}
+
+    /**
+     * Called when an asynchronously posted event of a coalesced type is dropped because a newer event with the same
+     * key replaced it.
+     */
+    default void onCoalesced(Class<?> eventClass) {}
+
+    /**
+     * Called whenever a handler throws, before the exception handler is called.
+     */
+    default void onException(Class<?> eventClass, EventHandler<?> handler, Throwable throwable) {}
+}
@@ -0,0 +1,80 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Event handler strategy for Subscribe annotations that uses the generated ListenerDispatcher of a listener class if
+ * there is one and the given fallback strategy otherwise.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@RequiredArgsConstructor
+class GeneratedEventHandlerFinderStrategy implements EventHandlerFinderStrategy {
+    static final EventHandlerFinderStrategy instance =
+            new GeneratedEventHandlerFinderStrategy(AnnotationEventHandlerFinderStrategy.instance);
+
+    @NonNull private final EventHandlerFinderStrategy fallback;
+
+    private final ClassValue<Optional<HandlerTemplate[]>> templates =
+            new ClassValue<Optional<HandlerTemplate[]>>() {
+                @Override
+                protected Optional<HandlerTemplate[]> computeValue(Class<?> type) {
+                    return findDispatcher(type).map(GeneratedEventHandlerFinderStrategy::describe);
+                }
+            };
+
+    @NonNull
+    @Override
+    public Stream<EventHandler<?>> findEventHandlers(@NonNull Object in) {
+        Optional<HandlerTemplate[]> generated = templates.get(in.getClass());
+        if (generated.isPresent()) {
+            return Stream.of(generated.get()).map(template -> template.bind(in));
+        } else {
+            return fallback.findEventHandlers(in);
+        }
+    }
+
+    private static Optional<ListenerDispatcher> findDispatcher(Class<?> type) {
+        Class<?> dispatcherClass;
+        try {
+            dispatcherClass = Class.forName(type.getName() + ListenerDispatcher.SUFFIX, true, type.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return Optional.empty();
+        }
+        if (!ListenerDispatcher.class.isAssignableFrom(dispatcherClass)) { return Optional.empty(); }
+        try {
+            return Optional.of((ListenerDispatcher) dispatcherClass.getConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create " + dispatcherClass.getName(), e);
+        }
+    }
+
+    private static HandlerTemplate[] describe(ListenerDispatcher dispatcher) {
+        List<HandlerTemplate> templates = new ArrayList<>();
+        dispatcher.describe(new ListenerDispatcher.Registrar() {
+            @Override
+            public <Event> void handler(Class<Event> type,
+                                        int priority,
+                                        boolean parallel,
+                                        ListenerDispatcher.Invoker<Event> invoker) {
+                templates.add(new HandlerTemplate(type, priority, parallel, target -> event -> {
+                    @SuppressWarnings("unchecked")
+                    Event cast = (Event) event;
+                    invoker.invoke(target, cast);
+                }));
+            }
+        });
+        return templates.toArray(new HandlerTemplate[templates.size()]);
+    }
+}
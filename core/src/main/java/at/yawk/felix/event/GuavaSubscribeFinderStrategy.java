@@ -0,0 +1,53 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import java.lang.reflect.Method;
+
+/**
+ * EventHandler strategy that looks for the guava Subscribe annotation in case someone used those accidently or they
+ * want to use them for abstraction. Like in guava, handlers are not called concurrently unless they are annotated with
+ * AllowConcurrentEvents, and such handlers are still called synchronously: posting threads wait for their turn instead
+ * of queueing the event in a mailbox like for {@code @Subscribe(parallel = false)}.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+class GuavaSubscribeFinderStrategy extends AnnotationEventHandlerFinderStrategy<com.google.common.eventbus.Subscribe> {
+    static final EventHandlerFinderStrategy instance = new GuavaSubscribeFinderStrategy();
+
+    GuavaSubscribeFinderStrategy() {
+        super(com.google.common.eventbus.Subscribe.class);
+    }
+
+    @Override
+    protected HandlerTemplate makeTemplate(com.google.common.eventbus.Subscribe annotation, Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        assert parameterTypes.length == 1 : method;
+        HandlerInvokers.Binder binder = HandlerInvokers.binder(method);
+        return new HandlerTemplate(parameterTypes[0],
+                                   EventHandler.DEFAULT_PRIORITY,
+                                   true,
+                                   method.isAnnotationPresent(AllowConcurrentEvents.class) ?
+                                           binder : synchronizedBinder(binder));
+    }
+
+    /**
+     * Serialize the calls of each bound handler with a lock per bound object.
+     */
+    private static HandlerInvokers.Binder synchronizedBinder(HandlerInvokers.Binder binder) {
+        return target -> {
+            EventHandler.ThrowingConsumer<Object> invoker = binder.bind(target);
+            Object lock = new Object();
+            return event -> {
+                synchronized (lock) {
+                    invoker.consume(event);
+                }
+            };
+        };
+    }
+}
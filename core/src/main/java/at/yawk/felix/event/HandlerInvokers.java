@@ -0,0 +1,158 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.lang.invoke.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import lombok.NonNull;
+
+/**
+ * Factory for direct event handler method invokers. Invokers are generated once per method using LambdaMetafactory if
+ * possible, falling back to method handles and finally to plain reflection for methods neither can reach.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+final class HandlerInvokers {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private static final MethodType factoryReturn = MethodType.methodType(EventHandler.ThrowingConsumer.class);
+    private static final MethodType consumeType = MethodType.methodType(void.class, Object.class);
+    private static final MethodType invokeType = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private HandlerInvokers() {}
+
+    /**
+     * Create a binder for the given method. Creating binders is expensive, binding them to an object is not.
+     */
+    @NonNull
+    static Binder binder(@NonNull Method method) {
+        if (canUseMetafactory(method)) {
+            try {
+                return metafactoryBinder(method);
+            } catch (LambdaConversionException | ReflectiveOperationException ignored) {
+                // fall through to method handles
+            }
+        }
+        try {
+            method.setAccessible(true);
+            return methodHandleBinder(lookup.unreflect(method));
+        } catch (IllegalAccessException | SecurityException ignored) {
+            return reflectionBinder(method);
+        }
+    }
+
+    /**
+     * LambdaMetafactory spins a class that links against the handler method from our own class loader, so the method
+     * and all types in its signature must be public and visible to us.
+     */
+    private static boolean canUseMetafactory(Method method) {
+        if (!Modifier.isPublic(method.getModifiers())) { return false; }
+        if (!isAccessible(method.getDeclaringClass())) { return false; }
+        if (!isAccessible(method.getReturnType())) { return false; }
+        for (Class<?> parameter : method.getParameterTypes()) {
+            if (!isAccessible(parameter)) { return false; }
+        }
+        return true;
+    }
+
+    private static boolean isAccessible(Class<?> type) {
+        while (type.isArray()) { type = type.getComponentType(); }
+        if (type.isPrimitive()) { return true; }
+        for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) { return false; }
+        }
+        try {
+            return Class.forName(type.getName(), false, HandlerInvokers.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static Binder metafactoryBinder(Method method)
+            throws LambdaConversionException, ReflectiveOperationException {
+        MethodHandle implementation = lookup.unreflect(method);
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        MethodType factoryType = isStatic ?
+                factoryReturn :
+                factoryReturn.appendParameterTypes(method.getDeclaringClass());
+        CallSite site = LambdaMetafactory.metafactory(
+                lookup,
+                "consume",
+                factoryType,
+                consumeType,
+                implementation,
+                MethodType.methodType(void.class, method.getParameterTypes()[0])
+        );
+        MethodHandle factory = site.getTarget();
+        if (isStatic) {
+            // no captured state, all bindings can share one instance
+            EventHandler.ThrowingConsumer<Object> consumer = createConsumer(factory);
+            return target -> consumer;
+        } else {
+            MethodHandle erased = factory.asType(MethodType.methodType(EventHandler.ThrowingConsumer.class,
+                                                                       Object.class));
+            return target -> {
+                try {
+                    @SuppressWarnings("unchecked")
+                    EventHandler.ThrowingConsumer<Object> consumer =
+                            (EventHandler.ThrowingConsumer<Object>) erased.invokeExact(target);
+                    return consumer;
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EventHandler.ThrowingConsumer<Object> createConsumer(MethodHandle factory) {
+        try {
+            return (EventHandler.ThrowingConsumer<Object>) factory.invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    private static Binder methodHandleBinder(MethodHandle handle) {
+        MethodHandle invoker;
+        if (handle.type().parameterCount() == 1) {
+            // static method, ignore the target
+            invoker = MethodHandles.dropArguments(handle.asType(consumeType), 0, Object.class);
+        } else {
+            invoker = handle.asType(invokeType);
+        }
+        // statement lambda: an expression body would make invokeExact return Object
+        return target -> event -> {
+            invoker.invokeExact(target, event);
+        };
+    }
+
+    private static Binder reflectionBinder(Method method) {
+        return target -> event -> {
+            try {
+                method.invoke(target, event);
+            } catch (InvocationTargetException e) {
+                // rethrow what the handler actually threw, like the other invokers do
+                throw e.getCause();
+            }
+        };
+    }
+
+    /**
+     * A method invoker that can be bound to objects declaring that method.
+     */
+    interface Binder {
+        @NonNull
+        EventHandler.ThrowingConsumer<Object> bind(Object target);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import at.yawk.felix.TypeHierarchy;
+import com.google.common.collect.MapMaker;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import lombok.NonNull;
+import lombok.Synchronized;
+
+/**
+ * Registered event handlers of an EventBus.
+ * <p>
+ * Handlers are kept in priority-ordered arrays per subscribed type. Changes insert and remove handlers using binary
+ * search and publish a new array once per batch; published arrays are never modified. Keyed handlers are kept in hash
+ * indexes instead so posting only needs to look at the handlers registered for the event's key. For each posted event
+ * class, the arrays and indexes of all its supertypes are compiled into one dispatch table entry. A change to a type
+ * only drops the entries of event classes that have that type in their hierarchy.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@SuppressWarnings("unchecked")
+class HandlerRegistry {
+    private static final EventHandler[] EMPTY = new EventHandler[0];
+
+    /**
+     * Priority-ordered handlers for each subscribed type, excluding handlers of its supertypes.
+     */
+    private final Map<Class<?>, EventHandler[]> bakedHandlers = new ConcurrentHashMap<>();
+
+    /**
+     * Key indexes of keyed handlers for each subscribed type, one per distinct key extractor.
+     */
+    private final Map<Class<?>, KeyIndex[]> keyIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * Compiled handlers for each concrete event class that has been posted, built from the baked handlers and key
+     * indexes of the whole type hierarchy. Compilation and changes are mutually exclusive so an entry is never built
+     * from stale baked handlers. Event classes are held weakly so posting doesn't keep their class loaders alive.
+     */
+    private final Map<Class<?>, Dispatch> dispatchTable = new MapMaker().weakKeys().makeMap();
+
+    /**
+     * Event classes in the dispatch table by each type of their hierarchy, so a change to a type can find the entries
+     * it affects. Both sides are held weakly, like the dispatch table keys.
+     */
+    private final Map<Class<?>, Set<Class<?>>> dependents = new MapMaker().weakKeys().makeMap();
+
+    /**
+     * Get the compiled handlers of the given event class and all its supertypes, compiling them if necessary.
+     */
+    @NonNull
+    Dispatch getDispatch(@NonNull Class<?> eventClass) {
+        Dispatch dispatch = dispatchTable.get(eventClass);
+        return dispatch == null ? compile(eventClass) : dispatch;
+    }
+
+    @Synchronized
+    private Dispatch compile(Class<?> eventClass) {
+        // another thread might have compiled this while we were waiting
+        Dispatch dispatch = dispatchTable.get(eventClass);
+        if (dispatch != null) { return dispatch; }
+
+        List<Class<?>> types = TypeHierarchy.of(eventClass).getTypes();
+        // supertypes in hierarchy order so the stable sort keeps more specific handlers first
+        EventHandler[] handlers = types.stream()
+                                       .map(bakedHandlers::get)
+                                       .filter(Objects::nonNull)
+                                       .flatMap(Stream::of)
+                                       .sorted()
+                                       .toArray(EventHandler[]::new);
+        KeyIndex[] indexes = types.stream()
+                                  .map(keyIndexes::get)
+                                  .filter(Objects::nonNull)
+                                  .flatMap(Stream::of)
+                                  .toArray(KeyIndex[]::new);
+        dispatch = new Dispatch(handlers, indexes);
+        dispatchTable.put(eventClass, dispatch);
+        for (Class<?> type : types) {
+            dependents.computeIfAbsent(type, t -> Collections.newSetFromMap(new MapMaker().weakKeys().makeMap()))
+                      .add(eventClass);
+        }
+        return dispatch;
+    }
+
+    /**
+     * Add all given handlers, publishing one new handler array per affected type.
+     */
+    @Synchronized
+    void add(@NonNull Collection<? extends EventHandler<?>> handlers) {
+        Map<Class<?>, List<EventHandler<?>>> byType = groupByType(handlers);
+        byType.forEach((type, added) -> {
+            EventHandler[] addedArray = added.toArray(new EventHandler[added.size()]);
+            // stable, keeps the given order within the same priority
+            Arrays.sort(addedArray);
+            bakedHandlers.put(type, insert(bakedHandlers.getOrDefault(type, EMPTY), addedArray));
+            invalidate(type);
+        });
+    }
+
+    /**
+     * Remove all given handlers (by identity), publishing one new handler array per affected type. Handlers that are not
+     * registered are ignored.
+     */
+    @Synchronized
+    void remove(@NonNull Collection<? extends EventHandler<?>> handlers) {
+        Map<Class<?>, List<EventHandler<?>>> byType = groupByType(handlers);
+        byType.forEach((type, removed) -> {
+            EventHandler[] existing = bakedHandlers.get(type);
+            if (existing == null) { return; }
+            EventHandler[] remaining = remove(existing, removed);
+            if (remaining.length == 0) {
+                bakedHandlers.remove(type);
+            } else {
+                bakedHandlers.put(type, remaining);
+            }
+            invalidate(type);
+        });
+    }
+
+    /**
+     * Add a handler that is only called for events whose key, as returned by the extractor, equals the given key.
+     * Handlers using the same extractor instance on the same type share one hash index.
+     */
+    @Synchronized
+    void addKeyed(@NonNull Class<?> type,
+                  @NonNull Function<Object, ?> extractor,
+                  @NonNull Object key,
+                  @NonNull EventHandler<?> handler) {
+        KeyIndex index = null;
+        KeyIndex[] indexes = keyIndexes.getOrDefault(type, new KeyIndex[0]);
+        for (KeyIndex candidate : indexes) {
+            if (candidate.extractor == extractor) { index = candidate; }
+        }
+        if (index == null) {
+            index = new KeyIndex(extractor);
+            indexes = Arrays.copyOf(indexes, indexes.length + 1);
+            indexes[indexes.length - 1] = index;
+            keyIndexes.put(type, indexes);
+            // compiled dispatches only know the indexes that existed when they were built
+            invalidate(type);
+        }
+        index.buckets.put(key, insert(index.buckets.getOrDefault(key, EMPTY), new EventHandler[]{ handler }));
+    }
+
+    /**
+     * Remove a handler added using {@link #addKeyed(Class, java.util.function.Function, Object, EventHandler)}.
+     */
+    @Synchronized
+    void removeKeyed(@NonNull Class<?> type,
+                     @NonNull Function<Object, ?> extractor,
+                     @NonNull Object key,
+                     @NonNull EventHandler<?> handler) {
+        KeyIndex[] indexes = keyIndexes.get(type);
+        if (indexes == null) { return; }
+        for (KeyIndex index : indexes) {
+            if (index.extractor != extractor) { continue; }
+            EventHandler[] bucket = index.buckets.get(key);
+            if (bucket == null) { return; }
+            EventHandler[] remaining = remove(bucket, Collections.singletonList(handler));
+            if (remaining.length > 0) {
+                index.buckets.put(key, remaining);
+            } else {
+                index.buckets.remove(key);
+                if (index.buckets.isEmpty()) {
+                    KeyIndex[] remainingIndexes = Stream.of(indexes)
+                                                        .filter(i -> i != index)
+                                                        .toArray(KeyIndex[]::new);
+                    if (remainingIndexes.length == 0) {
+                        keyIndexes.remove(type);
+                    } else {
+                        keyIndexes.put(type, remainingIndexes);
+                    }
+                    invalidate(type);
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Drop the compiled handlers of all event classes that have the given type in their hierarchy. They are recompiled
+     * the next time their event class is posted. Called while holding the lock, like compilation.
+     */
+    private void invalidate(Class<?> type) {
+        Set<Class<?>> affected = dependents.get(type);
+        if (affected != null) {
+            affected.forEach(dispatchTable::remove);
+        }
+    }
+
+    /**
+     * Compiled handlers of one concrete event class.
+     */
+    static final class Dispatch {
+        /**
+         * Priority-ordered handlers that are called for every event.
+         */
+        final EventHandler[] handlers;
+        /**
+         * Key indexes of all supertypes. Empty unless keyed handlers were subscribed.
+         */
+        final KeyIndex[] indexes;
+        /**
+         * Whether the event class has no handlers anywhere in its hierarchy.
+         */
+        final boolean none;
+
+        private Dispatch(EventHandler[] handlers, KeyIndex[] indexes) {
+            this.handlers = handlers;
+            this.indexes = indexes;
+            this.none = handlers.length == 0 && indexes.length == 0;
+        }
+
+        /**
+         * Get the priority-ordered handlers to call for the given event. Only allocates if keyed handlers match the
+         * event in addition to other handlers.
+         */
+        EventHandler[] select(Object event) {
+            EventHandler[] selected = handlers;
+            for (KeyIndex index : indexes) {
+                Object key = index.extractor.apply(event);
+                if (key == null) { continue; }
+                EventHandler[] bucket = index.buckets.get(key);
+                if (bucket == null) { continue; }
+                selected = selected.length == 0 ? bucket : insert(selected, bucket);
+            }
+            return selected;
+        }
+    }
+
+    /**
+     * Hash index of keyed handlers sharing one key extractor.
+     */
+    static final class KeyIndex {
+        final Function<Object, ?> extractor;
+        /**
+         * Priority-ordered handlers by key. Values are replaced, never modified.
+         */
+        final Map<Object, EventHandler[]> buckets = new ConcurrentHashMap<>();
+
+        KeyIndex(Function<Object, ?> extractor) {
+            this.extractor = extractor;
+        }
+    }
+
+    private static Map<Class<?>, List<EventHandler<?>>> groupByType(Collection<? extends EventHandler<?>> handlers) {
+        Map<Class<?>, List<EventHandler<?>>> byType = new LinkedHashMap<>();
+        for (EventHandler<?> handler : handlers) {
+            byType.computeIfAbsent(handler.getType(), t -> new ArrayList<>()).add(handler);
+        }
+        return byType;
+    }
+
+    /**
+     * Merge sorted handlers into a sorted array. Added handlers are placed after existing ones of the same priority.
+     */
+    private static EventHandler[] insert(EventHandler[] existing, EventHandler[] added) {
+        EventHandler[] result = new EventHandler[existing.length + added.length];
+        int from = 0;
+        int to = 0;
+        for (EventHandler handler : added) {
+            int at = upperBound(existing, from, handler);
+            System.arraycopy(existing, from, result, to, at - from);
+            to += at - from;
+            from = at;
+            result[to++] = handler;
+        }
+        System.arraycopy(existing, from, result, to, existing.length - from);
+        return result;
+    }
+
+    /**
+     * Remove the given handlers from a sorted array, locating each one by binary search.
+     */
+    private static EventHandler[] remove(EventHandler[] existing, List<EventHandler<?>> removed) {
+        boolean[] drop = new boolean[existing.length];
+        int dropCount = 0;
+        for (EventHandler<?> handler : removed) {
+            // scan the range of handlers with the same priority for this exact handler
+            for (int i = lowerBound(existing, handler); i < existing.length; i++) {
+                if (existing[i].compareTo(handler) != 0) { break; }
+                if (existing[i] == handler && !drop[i]) {
+                    drop[i] = true;
+                    dropCount++;
+                    break;
+                }
+            }
+        }
+        if (dropCount == 0) { return existing; }
+        EventHandler[] result = new EventHandler[existing.length - dropCount];
+        int to = 0;
+        for (int i = 0; i < existing.length; i++) {
+            if (!drop[i]) { result[to++] = existing[i]; }
+        }
+        return result;
+    }
+
+    /**
+     * First index at or after from whose handler sorts after the given one.
+     */
+    private static int upperBound(EventHandler[] sorted, int from, EventHandler handler) {
+        int low = from;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(handler) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * First index whose handler does not sort before the given one.
+     */
+    private static int lowerBound(EventHandler[] sorted, EventHandler handler) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(handler) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
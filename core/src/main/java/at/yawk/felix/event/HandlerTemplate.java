@@ -0,0 +1,36 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Discovered event handler of a listener class that can be bound to instances of that class.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@Value
+class HandlerTemplate {
+    @NonNull Class<?> type;
+    int priority;
+    /**
+     * Whether concurrent calls are allowed.
+     */
+    boolean parallel;
+    @NonNull HandlerInvokers.Binder binder;
+
+    /**
+     * Create an event handler calling this template's handler on the given object.
+     */
+    @NonNull
+    EventHandler<?> bind(@NonNull Object target) {
+        EventHandler.ThrowingConsumer<Object> invoker = binder.bind(target);
+        // serial handlers get their own mailbox per bound object
+        return new EventHandler<>(type, parallel ? invoker : new Mailbox(invoker), priority);
+    }
+}
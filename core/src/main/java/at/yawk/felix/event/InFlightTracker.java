@@ -0,0 +1,78 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Counts asynchronous work that has been accepted but not completed yet so it can be drained on shutdown.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+final class InFlightTracker {
+    private final AtomicLong inFlight = new AtomicLong();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Register a new unit of work.
+     *
+     * @return false if we are shut down and the work must be rejected.
+     */
+    boolean enter() {
+        inFlight.incrementAndGet();
+        if (shutdown) {
+            exit();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Register a new unit of work that can't be rejected, such as an event queued for a serial handler by a
+     * synchronous post.
+     */
+    void enterAlways() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Mark a unit of work registered with {@link #enter()} or {@link #enterAlways()} as completed.
+     */
+    void exit() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    void shutdown() {
+        shutdown = true;
+    }
+
+    boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Wait until all registered work has completed.
+     *
+     * @return false if the timeout elapsed first.
+     */
+    synchronized boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (inFlight.get() > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) { return false; }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+/**
+ * Handler table of a listener class generated at compile time by the felix-processor annotation processor, so
+ * subscribing instances of that class does not need reflection.
+ * <p>
+ * The dispatcher of a listener class is named like the binary name of that class followed by {@link #SUFFIX} and must
+ * have a public no-arg constructor. It is only used for instances of exactly that class.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+public interface ListenerDispatcher {
+    public static final String SUFFIX = "$$EventDispatcher";
+
+    /**
+     * Pass all Subscribe handlers of the listener class, including inherited ones, to the given registrar.
+     */
+    void describe(Registrar registrar);
+
+    public interface Registrar {
+        /**
+         * Add a handler.
+         *
+         * @param invoker Calls the handler method on the listener given to it.
+         */
+        <Event> void handler(Class<Event> type, int priority, boolean parallel, Invoker<Event> invoker);
+    }
+
+    @FunctionalInterface
+    public interface Invoker<Event> {
+        void invoke(Object listener, Event event) throws Throwable;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Serializes calls to a handler without blocking callers. If the handler is idle, the posting thread calls it
+ * directly, in priority order with the other handlers of the event. If the handler is busy, the posting thread queues
+ * the event and returns, and the queued events are delivered one at a time, in the order they were queued, on the
+ * async executor of the bus the handler was subscribed to. A drain task delivers a bounded number of events and hands
+ * the rest to a new task, so a busy mailbox doesn't keep an executor thread to itself.
+ * <p>
+ * Queued events are delivered after the post that queued them returned and are not ordered relative to the other
+ * handlers of the event. Exceptions are passed to the exception handler of the bus instead of being thrown.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+@RequiredArgsConstructor
+final class Mailbox implements EventHandler.ThrowingConsumer<Object> {
+    /**
+     * Maximum number of events delivered by one drain task.
+     */
+    private static final int DRAIN_LIMIT = 64;
+
+    @NonNull private final EventHandler.ThrowingConsumer<Object> handler;
+
+    private final Queue<Queued> pending = new ConcurrentLinkedQueue<>();
+    /**
+     * Whether the handler is held by a posting thread or a drain task is queued or running.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private volatile ExceptionHandler exceptionHandler = ExceptionHandler.PRINT_TRACE;
+    private volatile EventHandler<?> owner = null;
+    private volatile InFlightTracker inFlight = null;
+    private volatile Executor executor = ForkJoinPool.commonPool();
+
+    /**
+     * Set where exceptions of the handler should be reported to, which tracker queued events count towards and which
+     * executor delivers them.
+     */
+    void attach(@NonNull ExceptionHandler exceptionHandler,
+                @NonNull EventHandler<?> owner,
+                @NonNull InFlightTracker inFlight,
+                @NonNull Executor executor) {
+        this.exceptionHandler = exceptionHandler;
+        this.owner = owner;
+        this.inFlight = inFlight;
+        this.executor = executor;
+    }
+
+    @Override
+    public void consume(Object event) {
+        if (scheduled.compareAndSet(false, true)) {
+            if (pending.isEmpty()) {
+                // idle, call the handler on the posting thread like any other handler
+                try {
+                    deliver(event);
+                } finally {
+                    scheduled.set(false);
+                }
+                // events other threads queued while we were delivering
+                if (!pending.isEmpty()) { schedule(); }
+                return;
+            }
+            // earlier events are still queued, ours goes behind them
+            enqueue(event);
+            if (!handOff()) { schedule(); }
+        } else {
+            enqueue(event);
+            schedule();
+        }
+    }
+
+    private void enqueue(Object event) {
+        InFlightTracker inFlight = this.inFlight;
+        if (inFlight != null) { inFlight.enterAlways(); }
+        pending.add(new Queued(event, inFlight));
+    }
+
+    /**
+     * Start a drain task unless the handler is held already.
+     */
+    private void schedule() {
+        while (scheduled.compareAndSet(false, true)) {
+            if (handOff()) { return; }
+        }
+    }
+
+    /**
+     * Start a drain task for the queued events. Must only be called while holding the handler.
+     *
+     * @return false if the executor rejected the task and events were left after delivering some on the caller. The
+     * handler is released in that case.
+     */
+    private boolean handOff() {
+        try {
+            executor.execute(this::drainAndReschedule);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // the executor was shut down, deliver on the caller instead of losing the events
+            return !drain();
+        }
+    }
+
+    private void drainAndReschedule() {
+        if (drain()) { schedule(); }
+    }
+
+    /**
+     * Deliver up to {@link #DRAIN_LIMIT} queued events.
+     *
+     * @return whether events are left.
+     */
+    private boolean drain() {
+        try {
+            for (int i = 0; i < DRAIN_LIMIT; i++) {
+                Queued next = pending.poll();
+                if (next == null) { break; }
+                try {
+                    deliver(next.event);
+                } finally {
+                    if (next.inFlight != null) { next.inFlight.exit(); }
+                }
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        // an event might have been queued after our last poll but before we released the mailbox
+        return !pending.isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(Object event) {
+        try {
+            handler.consume(event);
+        } catch (Throwable t) {
+            try {
+                exceptionHandler.onException(event, t, (EventHandler<Object>) owner);
+            } catch (Throwable u) {
+                // we can't do much more
+                //noinspection CallToPrintStackTrace
+                u.printStackTrace();
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class Queued {
+        final Object event;
+        /**
+         * The tracker the event was counted by, if any.
+         */
+        final InFlightTracker inFlight;
+    }
+}
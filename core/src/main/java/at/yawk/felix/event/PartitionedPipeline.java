@@ -0,0 +1,88 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+
+/**
+ * Event pipeline that delivers events in parallel across a fixed number of partitions while keeping the order of
+ * events with the same partition key, created using
+ * {@link EventBus#createPartitionedPipeline(int, int, WaitStrategy, java.util.function.Function)}.
+ * <p>
+ * Each partition is a {@link RingBufferPipeline} with its own consumer thread. Events are assigned to a partition by
+ * the hash of their key, so all events with the same key are delivered on the same thread in the order they were
+ * published, while different partitions run concurrently. Handlers holding per-key state therefore don't need locks
+ * as long as that state is only touched from events of that key.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+public final class PartitionedPipeline implements Drainable {
+    private final RingBufferPipeline[] partitions;
+    private final Function<Object, ?> partitionKey;
+
+    PartitionedPipeline(RingBufferPipeline[] partitions, Function<Object, ?> partitionKey) {
+        this.partitions = partitions;
+        this.partitionKey = partitionKey;
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Publish an event to the partition of the key returned by the partition key function, waiting if that
+     * partition's buffer is full.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if this pipeline was shut down.
+     */
+    public void publish(@NonNull Object event) {
+        publish(partitionKey.apply(event), event);
+    }
+
+    /**
+     * Publish an event to the partition of the given key, waiting if that partition's buffer is full. Events with a
+     * null key all go to the same partition.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if this pipeline was shut down.
+     */
+    public void publish(@Nullable Object key, @NonNull Object event) {
+        partitions[partition(key)].publish(event);
+    }
+
+    private int partition(@Nullable Object key) {
+        if (key == null) { return 0; }
+        int hash = key.hashCode();
+        // spread the high bits, many hash codes only differ there
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    @Override
+    public void shutdown() {
+        for (RingBufferPipeline partition : partitions) {
+            partition.shutdown();
+        }
+    }
+
+    public boolean isShutdown() {
+        return partitions[0].isShutdown();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (RingBufferPipeline partition : partitions) {
+            if (!partition.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) { return false; }
+        }
+        return true;
+    }
+}
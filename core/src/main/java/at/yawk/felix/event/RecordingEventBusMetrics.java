@@ -0,0 +1,202 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * EventBusMetrics implementation that counts posts and exceptions per event class and records handler latencies per
+ * event class and per handler.
+ * <p>
+ * Statistics of handlers are kept after they are unsubscribed until {@link #reset()} is called. Handlers are told apart
+ * by identity, so handlers that are equal but subscribed separately get their own statistics.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+public class RecordingEventBusMetrics implements EventBusMetrics {
+    /**
+     * Time one in this many posts.
+     */
+    private final int sampleInterval;
+
+    private final Map<Class<?>, Stats> eventStats = new ConcurrentHashMap<>();
+    private final Map<HandlerKey, Stats> handlerStats = new ConcurrentHashMap<>();
+
+    /**
+     * Create a metrics instance that times every post.
+     */
+    public RecordingEventBusMetrics() {
+        this(1);
+    }
+
+    /**
+     * Create a metrics instance that times a random sample of about one in sampleInterval posts. Posts and exceptions
+     * are always counted.
+     */
+    public RecordingEventBusMetrics(int sampleInterval) {
+        if (sampleInterval <= 0) { throw new IllegalArgumentException("Sample interval must be positive"); }
+        this.sampleInterval = sampleInterval;
+    }
+
+    @Override
+    public void onPost(Class<?> eventClass, int handlerCount) {
+        stats(eventStats, eventClass).count.increment();
+    }
+
+    @Override
+    public boolean sampleTiming() {
+        return sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0;
+    }
+
+    @Override
+    public void onHandlerCompleted(Class<?> eventClass, EventHandler<?> handler, long nanos) {
+        stats(eventStats, eventClass).latency.record(nanos);
+        Stats stats = stats(handlerStats, new HandlerKey(handler));
+        stats.count.increment();
+        stats.latency.record(nanos);
+    }
+
+    @Override
+    public void onCoalesced(Class<?> eventClass) {
+        stats(eventStats, eventClass).coalesced.increment();
+    }
+
+    @Override
+    public void onException(Class<?> eventClass, EventHandler<?> handler, Throwable throwable) {
+        stats(eventStats, eventClass).exceptions.increment();
+        stats(handlerStats, new HandlerKey(handler)).exceptions.increment();
+    }
+
+    private static <K> Stats stats(Map<K, Stats> map, K key) {
+        // plain get first, computeIfAbsent locks even if the mapping exists
+        Stats stats = map.get(key);
+        return stats == null ? map.computeIfAbsent(key, k -> new Stats()) : stats;
+    }
+
+    /**
+     * Statistics of all event classes that were posted. In these, {@link Stats#getCount()} is the number of posts and
+     * the latency histogram contains sampled handler calls of all handlers of the event class.
+     */
+    @NonNull
+    public Map<Class<?>, Stats> getEventStats() {
+        return Collections.unmodifiableMap(eventStats);
+    }
+
+    /**
+     * Snapshot of the statistics of all handlers that were timed or threw, keyed by identity. In these,
+     * {@link Stats#getCount()} is the number of timed calls.
+     */
+    @NonNull
+    public Map<EventHandler<?>, Stats> getHandlerStats() {
+        Map<EventHandler<?>, Stats> snapshot = new IdentityHashMap<>();
+        handlerStats.forEach((key, stats) -> snapshot.put(key.handler, stats));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Get the statistics of a handler or an empty instance if it was never timed and never threw.
+     */
+    @NonNull
+    public Stats getHandlerStats(@NonNull EventHandler<?> handler) {
+        return handlerStats.getOrDefault(new HandlerKey(handler), Stats.EMPTY);
+    }
+
+    /**
+     * Get the statistics of an event class or an empty instance if it was never posted.
+     */
+    @NonNull
+    public Stats getEventStats(@NonNull Class<?> eventClass) {
+        return eventStats.getOrDefault(eventClass, Stats.EMPTY);
+    }
+
+    /**
+     * Remove all recorded statistics.
+     */
+    public void reset() {
+        eventStats.clear();
+        handlerStats.clear();
+    }
+
+    /**
+     * Export all statistics as flat name-value pairs, for example to feed them into a monitoring system. Names are
+     * prefixed with "event." or "handler." followed by the given naming function's result.
+     */
+    public void export(@NonNull Function<Object, String> naming, @NonNull Exporter exporter) {
+        eventStats.forEach((type, stats) -> stats.export("event." + naming.apply(type), exporter));
+        handlerStats.forEach((key, stats) -> stats.export("handler." + naming.apply(key.handler), exporter));
+    }
+
+    /**
+     * Map key comparing handlers by identity, since equal handlers may be subscribed more than once.
+     */
+    @RequiredArgsConstructor
+    private static final class HandlerKey {
+        final EventHandler<?> handler;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof HandlerKey && ((HandlerKey) o).handler == handler;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(handler);
+        }
+    }
+
+    public static interface Exporter {
+        void export(String name, double value);
+    }
+
+    @ThreadSafe
+    public static final class Stats {
+        private static final Stats EMPTY = new Stats();
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder exceptions = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        @Getter private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Stats() {}
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getExceptions() {
+            return exceptions.sum();
+        }
+
+        /**
+         * The number of asynchronous posts of an event class that were dropped by coalescing.
+         */
+        public long getCoalesced() {
+            return coalesced.sum();
+        }
+
+        private void export(String prefix, Exporter exporter) {
+            exporter.export(prefix + ".count", getCount());
+            exporter.export(prefix + ".exceptions", getExceptions());
+            exporter.export(prefix + ".coalesced", getCoalesced());
+            exporter.export(prefix + ".latency.mean", latency.getMean());
+            exporter.export(prefix + ".latency.p50", latency.getValueAtPercentile(50));
+            exporter.export(prefix + ".latency.p99", latency.getValueAtPercentile(99));
+            exporter.export(prefix + ".latency.max", latency.getMax());
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+
+/**
+ * Event pipeline backed by a preallocated ring buffer, created using
+ * {@link EventBus#createRingBuffer(int, WaitStrategy)}.
+ * <p>
+ * Any number of threads may publish events. Producers claim slots using a sequence counter and mark them as published
+ * once the event is written, so publishing does not allocate. Consumer threads take turns claiming batches of
+ * published events and post each one to the bus. Each consumer has its own sequence marking the events it is done
+ * with, and producers only reuse a slot once every consumer is past it.
+ * <p>
+ * With a single consumer, events are delivered in the order they were claimed. With more consumers, batches are
+ * processed concurrently, so events are delivered out of order and handlers are called concurrently. Handlers are
+ * always called in priority order for each event.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+public final class RingBufferPipeline implements Drainable {
+    /**
+     * Set on the claim sequence once we are shut down. No slots can be claimed after that.
+     */
+    private static final long CLOSED = 1L << 62;
+
+    private final EventBus bus;
+    private final WaitStrategy waitStrategy;
+
+    private final Object[] entries;
+    /**
+     * For each slot, the round (sequence / buffer size) of the event last published to it.
+     */
+    private final AtomicIntegerArray published;
+    private final int mask;
+    private final int shift;
+
+    /**
+     * Next sequence to be claimed by producers, possibly with the CLOSED bit set.
+     */
+    private final Sequence claimed = new Sequence(0);
+    /**
+     * Next sequence to be taken by a consumer.
+     */
+    private final Sequence work = new Sequence(0);
+    /**
+     * For each consumer, a sequence below all events it has yet to process. Producers may overwrite up to the lowest
+     * of these.
+     */
+    private final Sequence[] gating;
+    /**
+     * The lowest gating sequence seen last, so producers don't have to look at all consumers for every claim. May be
+     * stale, but never too high.
+     */
+    private final Sequence gatingCache = new Sequence(-1);
+    /**
+     * Maximum number of events a consumer takes at once, so one consumer doesn't take everything.
+     */
+    private final int maxBatch;
+
+    private final CountDownLatch terminated;
+
+    private RingBufferPipeline(EventBus bus, int bufferSize, int consumers, WaitStrategy waitStrategy) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Buffer size must be a positive power of two");
+        }
+        if (consumers <= 0) { throw new IllegalArgumentException("Consumer count must be positive"); }
+        this.bus = bus;
+        this.waitStrategy = waitStrategy;
+        this.entries = new Object[bufferSize];
+        this.published = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            published.set(i, -1);
+        }
+        this.mask = bufferSize - 1;
+        this.shift = Integer.numberOfTrailingZeros(bufferSize);
+        this.gating = new Sequence[consumers];
+        for (int i = 0; i < consumers; i++) {
+            gating[i] = new Sequence(-1);
+        }
+        this.maxBatch = Math.max(1, bufferSize / consumers);
+        this.terminated = new CountDownLatch(consumers);
+    }
+
+    static RingBufferPipeline start(EventBus bus,
+                                    int bufferSize,
+                                    int consumers,
+                                    WaitStrategy waitStrategy,
+                                    ThreadFactory threadFactory) {
+        RingBufferPipeline pipeline = new RingBufferPipeline(bus, bufferSize, consumers, waitStrategy);
+        for (Sequence sequence : pipeline.gating) {
+            threadFactory.newThread(() -> pipeline.consume(sequence)).start();
+        }
+        return pipeline;
+    }
+
+    public int getBufferSize() {
+        return entries.length;
+    }
+
+    /**
+     * Publish an event, waiting for a free slot if the buffer is full.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if this pipeline was shut down.
+     */
+    public void publish(@NonNull Object event) {
+        long sequence;
+        while ((sequence = claim()) == -1) {
+            waitStrategy.idle();
+        }
+        write(sequence, event);
+    }
+
+    /**
+     * Publish an event if there is a free slot.
+     *
+     * @return false if the buffer was full.
+     * @throws java.util.concurrent.RejectedExecutionException if this pipeline was shut down.
+     */
+    public boolean tryPublish(@NonNull Object event) {
+        long sequence = claim();
+        if (sequence == -1) { return false; }
+        write(sequence, event);
+        return true;
+    }
+
+    /**
+     * Claim the next sequence.
+     *
+     * @return the claimed sequence or -1 if the buffer is full.
+     */
+    private long claim() {
+        while (true) {
+            long next = claimed.get();
+            if ((next & CLOSED) != 0) { throw new RejectedExecutionException("Pipeline has been shut down"); }
+            long wrapPoint = next - entries.length;
+            if (wrapPoint > gatingCache.get()) {
+                long lowest = lowestGating();
+                gatingCache.set(lowest);
+                if (wrapPoint > lowest) { return -1; }
+            }
+            if (claimed.compareAndSet(next, next + 1)) { return next; }
+        }
+    }
+
+    private void write(long sequence, Object event) {
+        int index = (int) sequence & mask;
+        entries[index] = event;
+        // ordered write, makes the entry visible to the consumer
+        published.lazySet(index, round(sequence));
+    }
+
+    private int round(long sequence) {
+        return (int) (sequence >>> shift);
+    }
+
+    private long lowestGating() {
+        long lowest = Long.MAX_VALUE;
+        for (Sequence sequence : gating) {
+            lowest = Math.min(lowest, sequence.get());
+        }
+        return lowest;
+    }
+
+    /**
+     * Consumer loop.
+     *
+     * @param own The gating sequence of this consumer.
+     */
+    private void consume(Sequence own) {
+        try {
+            while (true) {
+                long next = work.get();
+                // we have nothing in progress, and anything we take from now on is at or after next. Must be visible
+                // before we take a batch so producers don't overwrite it
+                own.set(next - 1);
+                long claimedNow = claimed.get();
+                long end = highestPublished(next, Math.min((claimedNow & ~CLOSED) - 1, next + maxBatch - 1));
+                if (end < next) {
+                    // all claimed events have been taken and no more can be claimed
+                    if ((claimedNow & CLOSED) != 0 && (claimedNow & ~CLOSED) <= next) { break; }
+                    waitStrategy.idle();
+                    continue;
+                }
+                // another consumer might have taken these events first
+                if (!work.compareAndSet(next, end + 1)) { continue; }
+                for (long sequence = next; sequence <= end; sequence++) {
+                    int index = (int) sequence & mask;
+                    Object event = entries[index];
+                    entries[index] = null;
+                    try {
+                        bus.post(event);
+                    } catch (Throwable t) {
+                        // handler exceptions are handled by the bus, this would be a bug in the exception handler
+                        //noinspection CallToPrintStackTrace
+                        t.printStackTrace();
+                    }
+                }
+                // the whole batch is freed for producers at once when we update our sequence for the next one
+            }
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Highest sequence up to which all events starting at the given one have been published.
+     */
+    private long highestPublished(long from, long to) {
+        for (long sequence = from; sequence <= to; sequence++) {
+            if (published.get((int) sequence & mask) != round(sequence)) { return sequence - 1; }
+        }
+        return to;
+    }
+
+    @Override
+    public void shutdown() {
+        long current;
+        do {
+            current = claimed.get();
+        } while ((current & CLOSED) == 0 && !claimed.compareAndSet(current, current | CLOSED));
+    }
+
+    public boolean isShutdown() {
+        return (claimed.get() & CLOSED) != 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+}
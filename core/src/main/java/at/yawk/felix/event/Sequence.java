@@ -0,0 +1,62 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Sequence counter padded on both sides so that counters written by different threads don't share a cache line. The
+ * JVM lays out superclass fields first, so the value sits between the padding of {@link SequenceLeftPadding} and the
+ * padding declared here.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@SuppressWarnings("unused")
+final class Sequence extends SequenceValue {
+    private static final AtomicLongFieldUpdater<SequenceValue> updater =
+            AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+
+    private long p9, p10, p11, p12, p13, p14, p15;
+
+    Sequence(long initialValue) {
+        this.value = initialValue;
+    }
+
+    long get() {
+        return value;
+    }
+
+    void set(long value) {
+        this.value = value;
+    }
+
+    /**
+     * Ordered write: cheaper than {@link #set(long)}, but only becomes visible to other threads eventually.
+     */
+    void lazySet(long value) {
+        updater.lazySet(this, value);
+    }
+
+    boolean compareAndSet(long expect, long update) {
+        return updater.compareAndSet(this, expect, update);
+    }
+}
+
+/**
+ * Padding in front of the value of a {@link Sequence}.
+ */
+@SuppressWarnings("unused")
+abstract class SequenceLeftPadding {
+    long p1, p2, p3, p4, p5, p6, p7;
+}
+
+/**
+ * The value of a {@link Sequence}.
+ */
+abstract class SequenceValue extends SequenceLeftPadding {
+    volatile long value;
+}
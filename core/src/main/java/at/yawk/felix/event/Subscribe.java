@@ -26,7 +26,11 @@ public @interface Subscribe {
     int priority() default EventHandler.DEFAULT_PRIORITY;
 
     /**
-     * Whether concurrent calls are allowed.
+     * Whether concurrent calls are allowed. If not, calls are serialized per subscribed object without blocking: if the
+     * handler is idle, the posting thread calls it in priority order like other handlers. Otherwise the posting thread
+     * queues the event and returns, and the queued events are delivered one at a time on the async executor of the
+     * bus, not ordered by priority relative to the other handlers of their event. Exceptions of such handlers are
+     * always passed to the exception handler.
      */
     boolean parallel() default true;
 }
@@ -0,0 +1,49 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How threads of a ring buffer pipeline wait for events (consumers) or free slots (producers).
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+public enum WaitStrategy {
+    /**
+     * Spin without backing off. Lowest latency, but keeps every waiting thread on a core.
+     */
+    BUSY_SPIN {
+        @Override
+        void idle() {}
+    },
+    /**
+     * Yield to other threads between checks. Low latency while freeing the core if other threads need it.
+     */
+    YIELD {
+        @Override
+        void idle() {
+            Thread.yield();
+        }
+    },
+    /**
+     * Park briefly between checks. Uses little CPU when idle at the cost of higher latency.
+     */
+    PARK {
+        @Override
+        void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    private static final long PARK_NANOS = 1000;
+
+    /**
+     * Called each time a waiting thread finds nothing to do.
+     */
+    abstract void idle();
+}
@@ -24,8 +24,14 @@ class AnnotatedPropertyDiscoveryStrategy implements PropertyDiscoveryStrategy {
     @NonNull
     @Override
     public Optional<ModuleProperties> findProperties(@NonNull Object module) {
+        return findClassProperties(module.getClass());
+    }
+
+    @NonNull
+    @Override
+    public Optional<ModuleProperties> findClassProperties(@NonNull Class<?> type) {
         // find the most specific properties
-        return findProperties(module.getClass()).findFirst();
+        return findProperties(type).findFirst();
     }
 
     /**
@@ -25,12 +25,17 @@ class AnnotatedPropertyDiscoveryStrategy2 implements PropertyDiscoveryStrategy {
 
     @Override
     public Optional<ModuleProperties> findProperties(@NonNull Object module) {
+        return findClassProperties(module.getClass());
+    }
+
+    @Override
+    public Optional<ModuleProperties> findClassProperties(@NonNull Class<?> type) {
         Set<Class<?>> dependencies = new HashSet<>();
         Set<Class<?>> softDependencies = new HashSet<>();
         Set<Class<?>> excludeRegistration = new HashSet<>();
 
         Module moduleAnnotation = collectAnnotations(
-                module.getClass(),
+                type,
                 dependencies,
                 softDependencies,
                 excludeRegistration
@@ -6,7 +6,7 @@
 
 package at.yawk.felix.module;
 
-import at.yawk.felix.FelixUtil;
+import at.yawk.felix.TypeHierarchy;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -24,10 +24,9 @@ import java.util.stream.Stream;
 class AnnotationInitializer implements Initializer {
     static final Initializer instance = new AnnotationInitializer();
 
-    @SuppressWarnings("deprecation")
     @Override
     public void initialize(ModuleManager moduleManager, Object module) {
-        FelixUtil.getSuperClasses(module.getClass())
+        TypeHierarchy.of(module.getClass()).getTypes().stream()
                 .flatMap(clazz -> Stream.concat(Arrays.stream(clazz.getDeclaredMethods()),
                                                 Arrays.stream(clazz.getDeclaredFields())))
                 .filter(annotated -> annotated.isAnnotationPresent(Init.class))
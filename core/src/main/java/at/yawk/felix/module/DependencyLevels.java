@@ -0,0 +1,78 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.*;
+import java.util.function.Function;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Topological layering of a dependency graph: every node only depends on nodes of earlier levels, so the nodes of one
+ * level can be loaded concurrently once the previous levels are done.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@Immutable
+final class DependencyLevels<T> {
+    /**
+     * Levels in loading order.
+     */
+    final List<List<T>> levels;
+    /**
+     * Nodes on a dependency cycle or depending on one. They have no valid loading order and are loaded one at a time
+     * after all levels, in reverse input order so dependencies discovered later come first.
+     */
+    final List<T> cyclic;
+
+    private DependencyLevels(List<List<T>> levels, List<T> cyclic) {
+        this.levels = levels;
+        this.cyclic = cyclic;
+    }
+
+    /**
+     * Sort the given nodes. Dependencies that are not part of the node collection are ignored.
+     */
+    static <T> DependencyLevels<T> of(Collection<T> nodes, Function<T, ? extends Collection<T>> dependencies) {
+        Map<T, Integer> missing = new HashMap<>();
+        Map<T, List<T>> dependents = new HashMap<>();
+        for (T node : nodes) {
+            missing.put(node, 0);
+        }
+        for (T node : nodes) {
+            for (T dependency : new HashSet<>(dependencies.apply(node))) {
+                if (missing.containsKey(dependency)) {
+                    missing.merge(node, 1, Integer::sum);
+                    dependents.computeIfAbsent(dependency, d -> new ArrayList<>()).add(node);
+                }
+            }
+        }
+
+        List<List<T>> levels = new ArrayList<>();
+        List<T> level = new ArrayList<>();
+        for (T node : nodes) {
+            if (missing.get(node) == 0) { level.add(node); }
+        }
+        while (!level.isEmpty()) {
+            levels.add(Collections.unmodifiableList(level));
+            List<T> next = new ArrayList<>();
+            for (T node : level) {
+                missing.remove(node);
+                for (T dependent : dependents.getOrDefault(node, Collections.emptyList())) {
+                    if (missing.merge(dependent, -1, Integer::sum) == 0) { next.add(dependent); }
+                }
+            }
+            level = next;
+        }
+
+        List<T> cyclic = new ArrayList<>();
+        for (T node : nodes) {
+            if (missing.containsKey(node)) { cyclic.add(node); }
+        }
+        Collections.reverse(cyclic);
+        return new DependencyLevels<>(Collections.unmodifiableList(levels), Collections.unmodifiableList(cyclic));
+    }
+}
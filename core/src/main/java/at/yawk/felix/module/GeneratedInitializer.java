@@ -0,0 +1,35 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.Optional;
+
+/**
+ * Initializer for Init members that uses the generated ModuleDescriptor of a module class if there is one and
+ * AnnotationInitializer otherwise.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+class GeneratedInitializer implements Initializer {
+    static final Initializer instance = new GeneratedInitializer();
+
+    private GeneratedInitializer() {}
+
+    @Override
+    public void initialize(ModuleManager moduleManager, Object module) {
+        Optional<ModuleDescriptor> descriptor = ModuleDescriptors.find(module.getClass());
+        if (descriptor.isPresent()) {
+            try {
+                descriptor.get().initialize(moduleManager, module);
+            } catch (Throwable t) {
+                throw new InvalidModuleException(t);
+            }
+        } else {
+            AnnotationInitializer.instance.initialize(moduleManager, module);
+        }
+    }
+}
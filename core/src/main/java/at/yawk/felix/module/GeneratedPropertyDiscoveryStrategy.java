@@ -0,0 +1,43 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.Optional;
+import lombok.NonNull;
+
+/**
+ * PropertyDiscoveryStrategy for module annotations that uses the generated ModuleDescriptor of a module class if there
+ * is one and the reflective annotation strategies otherwise.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+class GeneratedPropertyDiscoveryStrategy implements PropertyDiscoveryStrategy {
+    static final PropertyDiscoveryStrategy instance = new GeneratedPropertyDiscoveryStrategy();
+
+    private GeneratedPropertyDiscoveryStrategy() {}
+
+    @NonNull
+    @Override
+    public Optional<ModuleProperties> findProperties(@NonNull Object module) {
+        return findClassProperties(module.getClass());
+    }
+
+    @NonNull
+    @Override
+    public Optional<ModuleProperties> findClassProperties(@NonNull Class<?> type) {
+        Optional<ModuleDescriptor> descriptor = ModuleDescriptors.find(type);
+        if (descriptor.isPresent()) {
+            return descriptor.get().getProperties();
+        }
+        // @AnnotatedModule takes precedence over the .annotated annotations
+        Optional<ModuleProperties> properties = AnnotatedPropertyDiscoveryStrategy.instance.findClassProperties(type);
+        if (properties.isPresent()) {
+            return properties;
+        }
+        return AnnotatedPropertyDiscoveryStrategy2.instance.findClassProperties(type);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.Optional;
+
+/**
+ * Precomputed module information of a class generated at compile time by the felix-processor annotation processor, so
+ * registering modules of that class does not need to scan it reflectively.
+ * <p>
+ * The descriptor of a module class is named like the binary name of that class followed by {@link #SUFFIX} and must
+ * have a public no-arg constructor. It is only used for modules of exactly that class.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+public interface ModuleDescriptor {
+    public static final String SUFFIX = "$$ModuleDescriptor";
+
+    /**
+     * The properties declared by the module annotations of the class, or an empty optional if it has none.
+     */
+    Optional<ModuleProperties> getProperties();
+
+    /**
+     * Call all Init methods and set all Init fields of the given module in priority order.
+     */
+    void initialize(ModuleManager moduleManager, Object module) throws Throwable;
+}
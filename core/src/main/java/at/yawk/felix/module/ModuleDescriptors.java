@@ -0,0 +1,48 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.Optional;
+
+/**
+ * Lookup of generated ModuleDescriptors.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+final class ModuleDescriptors {
+    private static final ClassValue<Optional<ModuleDescriptor>> descriptors =
+            new ClassValue<Optional<ModuleDescriptor>>() {
+                @Override
+                protected Optional<ModuleDescriptor> computeValue(Class<?> type) {
+                    return load(type);
+                }
+            };
+
+    private ModuleDescriptors() {}
+
+    /**
+     * Find the generated descriptor of the given module class.
+     */
+    static Optional<ModuleDescriptor> find(Class<?> type) {
+        return descriptors.get(type);
+    }
+
+    private static Optional<ModuleDescriptor> load(Class<?> type) {
+        Class<?> descriptorClass;
+        try {
+            descriptorClass = Class.forName(type.getName() + ModuleDescriptor.SUFFIX, true, type.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return Optional.empty();
+        }
+        if (!ModuleDescriptor.class.isAssignableFrom(descriptorClass)) { return Optional.empty(); }
+        try {
+            return Optional.of((ModuleDescriptor) descriptorClass.getConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new InvalidModuleException("Could not create " + descriptorClass.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,677 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import at.yawk.felix.TypeHierarchy;
+import com.google.common.collect.MapMaker;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.*;
+
+/**
+ * Main module manager class.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@NoArgsConstructor(staticName = "create")
+@ThreadSafe
+public class ModuleManager {
+    /**
+     * All modules. Each value must only contain modules of the key type.
+     */
+    private final ConcurrentMap<Class<?>, SnapshotList<ModuleWrapper>> modules = new ConcurrentHashMap<>();
+    /**
+     * Locks making duplicate checks and reservations atomic. Readers never take them.
+     */
+    private final TypeLocks typeLocks = new TypeLocks();
+    /**
+     * Snapshots of every type that was looked up, republished by {@link #publish(ModuleRef.Slot, Class)} whenever the
+     * modules registered as the type change. Types are held weakly so lookups don't keep their class loaders alive.
+     */
+    private final Map<Class<?>, ModuleRef.Slot> slots = new MapMaker().weakKeys().makeMap();
+
+    private final List<PropertyDiscoveryStrategy> discoveryStrategies = new CopyOnWriteArrayList<>();
+    private final List<Initializer> initializers = new CopyOnWriteArrayList<>();
+
+    {
+        discoveryStrategies.add(GeneratedPropertyDiscoveryStrategy.instance);
+        discoveryStrategies.add(ModuleClassDiscoveryStrategy.instance);
+
+        initializers.add(GeneratedInitializer.instance);
+        initializers.add(InterfaceInitializer.instance);
+    }
+
+    /**
+     * Return a module by class.
+     *
+     * @throws java.lang.IllegalStateException if no module of that type is registered.
+     */
+    @NonNull
+    public <M> M get(@NonNull Class<M> clazz) {
+        return ModuleRef.get(this, clazz, slot(clazz).snapshot);
+    }
+
+    /**
+     * Returns whether a module of the given type exists. Lazily registered modules count without being loaded.
+     */
+    public boolean has(@NonNull Class<?> clazz) {
+        return slot(clazz).snapshot != ModuleRef.ABSENT;
+    }
+
+    /**
+     * Returns a handle to the modules of the given type. Resolving the handle skips the type lookup of
+     * {@link #get(Class)} and always reflects the current registrations, so it can be kept for lookups on hot paths.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public <M> ModuleRef<M> ref(@NonNull Class<M> clazz) {
+        ModuleRef.Slot slot = slot(clazz);
+        synchronized (slot) {
+            ModuleRef<M> ref = slot.ref == null ? null : (ModuleRef<M>) slot.ref.get();
+            if (ref == null) {
+                ref = new ModuleRef<>(this, clazz, slot);
+                slot.ref = new WeakReference<>(ref);
+            }
+            return ref;
+        }
+    }
+
+    /**
+     * Get the snapshot slot of the given type, creating it on first use.
+     */
+    private ModuleRef.Slot slot(Class<?> clazz) {
+        ModuleRef.Slot slot = slots.get(clazz);
+        if (slot == null) {
+            slot = new ModuleRef.Slot(computeSnapshot(clazz));
+            ModuleRef.Slot previous = slots.putIfAbsent(clazz, slot);
+            if (previous != null) { return previous; }
+            // changes from now on publish to the new slot, catch up with the ones since it was computed
+            publish(slot, clazz);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns whether a module of the given type exists or is currently being loaded.
+     */
+    public boolean hasOrLoading(@NonNull Class<?> clazz) {
+        return allUnloaded(clazz).findAny().isPresent();
+    }
+
+    /**
+     * Returns whether a module of the exact given type (no submodule) exists or is currently being loaded.
+     */
+    public boolean hasOrLoadingExact(@NonNull Class<?> clazz) {
+        return allUnloaded(clazz).filter(wrapper -> wrapper.of == clazz).findAny().isPresent();
+    }
+
+    /**
+     * Returns any registered module of the given type or an empty optional if none was found.
+     */
+    @NonNull
+    public <M> Optional<M> optional(@NonNull Class<M> clazz) {
+        return ModuleRef.optional(this, clazz, slot(clazz).snapshot);
+    }
+
+    /**
+     * Returns all modules of the given type. Lazily registered modules are loaded as the stream reaches them.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public <M> Stream<M> all(@NonNull Class<M> clazz) {
+        return allUnloaded(clazz).peek(this::materialize).filter(w -> w.valid).map(w -> (M) w.module.get());
+    }
+
+    @NonNull
+    private Stream<ModuleWrapper> allUnloaded(@NonNull Class<?> clazz) {
+        SnapshotList<ModuleWrapper> collected = modules.get(clazz);
+        return collected == null ? Stream.empty() : collected.stream();
+    }
+
+    /**
+     * Returns all modules.
+     */
+    @NonNull
+    public Stream<Object> all() {
+        return all(Object.class);
+    }
+
+    /**
+     * Perform an action for each module of the given type. Execution is parallel if in a ForkJoinPool.
+     */
+    public <M> void forEach(@NonNull Class<M> clazz, @NonNull Consumer<M> action) {
+        all(clazz).parallel().forEach(action);
+    }
+
+    public void addPropertyDiscoveryStrategy(@NonNull PropertyDiscoveryStrategy strategy) {
+        discoveryStrategies.add(0, strategy);
+    }
+
+    public void addInitializer(Initializer initializer) {
+        initializers.add(initializer);
+    }
+
+    /**
+     * Attempt to register a module by class. The class needs to have an empty constructor.
+     * <p>
+     * Duplicate modules are ignored: If a module of the same type already exists, no registration is performed.
+     */
+    public void registerModule(Class<?> type) {
+        registerModule(type, RegistrationProperties.defaults);
+    }
+
+    /**
+     * Attempt to register a module by class. The class needs to have an empty constructor.
+     */
+    public void registerModule(Class<?> type, RegistrationProperties properties) {
+        loadModule(type, properties, Optional.empty());
+    }
+
+    /**
+     * Attempt to register a module object.
+     *
+     * @throws java.lang.IllegalStateException if a module of the same type already exists.
+     */
+    public void registerModuleObject(@NonNull Object module) {
+        registerModuleObject(module, RegistrationProperties.defaults);
+    }
+
+    /**
+     * Register a module object.
+     */
+    public void registerModuleObject(@NonNull Object module, RegistrationProperties registrationProperties) {
+        loadModule(module, registrationProperties, Optional.empty());
+    }
+
+    /**
+     * Register a module with default settings and no dependencies. Primary use is creating modules from anonymous
+     * classes. No duplicate detection is performed.
+     */
+    public void registerModuleAnonymous(@NonNull Object module) {
+        loadModule(module, RegistrationProperties.anonymous, Optional.of(ModuleProperties.create()));
+    }
+
+    /**
+     * Register the given module classes and their dependencies in bulk, loading independent modules concurrently on
+     * the common ForkJoinPool.
+     *
+     * @see #registerModules(Collection, RegistrationProperties, Executor)
+     */
+    public void registerModules(@NonNull Collection<? extends Class<?>> types) {
+        registerModules(types, RegistrationProperties.defaults, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Register the given module classes and their dependencies in bulk.
+     * <p>
+     * The given classes are checked with the duplicate finder and reserved first, then the reserved modules are
+     * instantiated and their properties discovered. If the dependency resolution strategy is
+     * {@link DependencyResolutionStrategy#REGISTER} this repeats for their missing dependencies. Modules rejected as
+     * duplicates are never instantiated. The modules are then initialized level by level in dependency order, with the
+     * modules of each level initialized concurrently on the given executor. Modules on dependency cycles are
+     * initialized one at a time at the end.
+     * <p>
+     * If the properties are lazy, the modules are registered lazily one by one like with
+     * {@link #registerModule(Class, RegistrationProperties)} and nothing is loaded.
+     * <p>
+     * If a module fails to load, the modules that have not been initialized yet are not registered and the exception
+     * is rethrown once the current level is done.
+     */
+    public void registerModules(@NonNull Collection<? extends Class<?>> types,
+                                @NonNull RegistrationProperties properties,
+                                @NonNull Executor executor) {
+        if (properties.isLazy()) {
+            // nothing is loaded now, so there is nothing to do in parallel
+            types.forEach(type -> registerModule(type, properties));
+            return;
+        }
+
+        List<ModuleWrapper> reserved = discover(types, properties, executor);
+        // the reservations belong to this call, not to the executor threads initializing the modules
+        Object owner = Reservation.currentOwner();
+        try {
+            Map<Class<?>, ModuleWrapper> byClass = new HashMap<>();
+            reserved.forEach(wrapper -> byClass.put(wrapper.of, wrapper));
+            DependencyLevels<ModuleWrapper> levels = DependencyLevels.of(
+                    reserved,
+                    wrapper -> wrapper.properties.get().getDependencies().stream()
+                            .map(byClass::get)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList())
+            );
+
+            for (List<ModuleWrapper> level : levels.levels) {
+                List<CompletableFuture<Void>> futures = level.stream()
+                        .map(wrapper -> CompletableFuture.runAsync(
+                                () -> Reservation.runAs(owner, () -> initializeWithDependencies(wrapper, properties)),
+                                executor))
+                        .collect(Collectors.toList());
+                joinAll(futures);
+            }
+            levels.cyclic.forEach(wrapper -> initializeWithDependencies(wrapper, properties));
+        } finally {
+            // unregister everything that didn't load
+            reserved.forEach(this::finalizeWrapper);
+        }
+    }
+
+    /**
+     * Reserve the given module classes and, if dependencies are to be registered, all their missing dependencies, then
+     * instantiate the reserved modules and find their properties. Duplicate checks only need the classes, so they run
+     * before anything is instantiated. Instantiation runs concurrently, one wave of newly found dependencies at a time.
+     * <p>
+     * Only the given classes are checked with the duplicate finder of the properties. Dependencies are, like in
+     * {@link DependencyResolutionStrategy#REGISTER}, only skipped if already present.
+     *
+     * @return the reserved modules. If this throws, they are unregistered again.
+     */
+    private List<ModuleWrapper> discover(Collection<? extends Class<?>> types,
+                                         RegistrationProperties properties,
+                                         Executor executor) {
+        boolean followDependencies =
+                properties.getDependencyResolutionStrategy() == DependencyResolutionStrategy.REGISTER;
+        List<ModuleWrapper> reserved = new ArrayList<>();
+        try {
+            Set<Class<?>> seen = new HashSet<>(types);
+            Set<Class<?>> next = new LinkedHashSet<>(types);
+            DuplicateFinder duplicateFinder = properties.getDuplicateFinder();
+            while (!next.isEmpty()) {
+                List<ModuleWrapper> wave = new ArrayList<>();
+                for (Class<?> type : next) {
+                    ModuleWrapper wrapper = new ModuleWrapper(type);
+                    DuplicateFinder finder = duplicateFinder;
+                    if (reserve(wrapper, () -> finder.register(this, type))) {
+                        reserved.add(wrapper);
+                        wave.add(wrapper);
+                    }
+                }
+                duplicateFinder = DuplicateFinder.IGNORE_DUPLICATE_CLASSES;
+
+                joinAll(wave.stream()
+                                .map(wrapper -> CompletableFuture.runAsync(() -> {
+                                    wrapper.module = Optional.of(instantiate(wrapper.of));
+                                    wrapper.properties = Optional.of(requireProperties(wrapper.module.get()));
+                                }, executor))
+                                .collect(Collectors.toList()));
+
+                next = new LinkedHashSet<>();
+                for (ModuleWrapper wrapper : wave) {
+                    unregisterExcluded(wrapper);
+                    if (followDependencies) {
+                        Stream.concat(wrapper.properties.get().getDependencies().stream(),
+                                      wrapper.properties.get().getSoftDependencies().stream())
+                                .filter(dependency -> !hasOrLoading(dependency) && seen.add(dependency))
+                                .forEach(next::add);
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            reserved.forEach(this::finalizeWrapper);
+            throw e;
+        }
+        return reserved;
+    }
+
+    /**
+     * Wait for all given futures and rethrow the first failure, with any further failures suppressed.
+     */
+    private static void joinAll(List<? extends CompletableFuture<?>> futures) {
+        Throwable failure = null;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure instanceof RuntimeException) { throw (RuntimeException) failure; }
+        if (failure instanceof Error) { throw (Error) failure; }
+        if (failure != null) { throw new CompletionException(failure); }
+    }
+
+    /**
+     * Find the module properties of a given module class without instantiating it.
+     */
+    private Optional<ModuleProperties> findClassProperties(@NonNull Class<?> type) {
+        return discoveryStrategies.stream()
+                                  .map(strategy -> strategy.findClassProperties(type))
+                                  .filter(Optional::isPresent)
+                                  .map(Optional::get)
+                                  .findFirst();
+    }
+
+    /**
+     * Find the module properties of a given module.
+     */
+    private Optional<ModuleProperties> findProperties(@NonNull Object module) {
+        return discoveryStrategies.stream()
+                                  .map(strategy -> strategy.findProperties(module))
+                                  .filter(Optional::isPresent)
+                                  .map(Optional::get)
+                                  .findFirst();
+    }
+
+    /**
+     * Load a module by class.
+     *
+     * @param knownProperties If not empty, these properties will be used instead of the found ones.
+     */
+    private void loadModule(Class<?> moduleClass,
+                            RegistrationProperties properties,
+                            Optional<ModuleProperties> knownProperties) {
+        ModuleWrapper wrapper = new ModuleWrapper(moduleClass);
+        if (!reserve(wrapper, () -> properties.getDuplicateFinder().register(this, moduleClass))) { return; }
+
+        if (properties.isLazy()) {
+            try {
+                wrapper.properties = Optional.of(knownProperties.orElseGet(
+                        () -> findClassProperties(moduleClass).orElseThrow(() -> new IllegalArgumentException(
+                                moduleClass.getName() + " can't be registered lazily because its properties can " +
+                                "only be found on an instance. Annotate it with @AnnotatedModule instead of " +
+                                "extending the Module class."))));
+            } catch (RuntimeException | Error e) {
+                finalizeWrapper(wrapper);
+                throw e;
+            }
+            // until now this was an ordinary loading module, lookups only see it once it is marked lazy
+            wrapper.lazy = properties;
+            unregisterExcluded(wrapper);
+            publish(wrapper);
+            wrapper.reservation.complete();
+            return;
+        }
+        try {
+            wrapper.module = Optional.of(instantiate(moduleClass));
+
+            loadModule(wrapper, properties, knownProperties);
+        } finally {
+            finalizeWrapper(wrapper);
+        }
+    }
+
+    /**
+     * Load a lazily registered module if that hasn't been started yet, or wait for the thread that is loading it.
+     */
+    private void materialize(ModuleWrapper wrapper) {
+        if (wrapper.lazy == null || wrapper.valid) { return; }
+        boolean claimed;
+        Reservation reservation;
+        synchronized (wrapper) {
+            claimed = !wrapper.materializing;
+            if (claimed) {
+                wrapper.reservation = new Reservation();
+                wrapper.materializing = true;
+            }
+            reservation = wrapper.reservation;
+        }
+        if (!claimed) {
+            // don't wait for ourselves when a lazy module is part of a dependency cycle
+            if (!reservation.isOwnedByCurrentOwner() && !reservation.await()) {
+                // the loading thread is waiting for us, so the module can neither be waited for nor loaded here
+                throw new InvalidModuleException(
+                        "Circular dependency on " + wrapper.of.getName() + ", which another thread is loading");
+            }
+            return;
+        }
+
+        try {
+            if (!wrapper.module.isPresent()) {
+                wrapper.module = Optional.of(instantiate(wrapper.of));
+            }
+            initializeWithDependencies(wrapper, wrapper.lazy);
+        } finally {
+            finalizeWrapper(wrapper);
+        }
+    }
+
+    /**
+     * Create a new instance of a module class using its empty constructor.
+     */
+    private static Object instantiate(Class<?> moduleClass) {
+        try {
+            Constructor<?> constructor = moduleClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Load a module by object.
+     *
+     * @param knownProperties If not empty, these properties will be used instead of the found ones.
+     */
+    private void loadModule(Object module,
+                            RegistrationProperties properties,
+                            Optional<ModuleProperties> knownProperties) {
+        // reserve wrapper space
+        ModuleWrapper wrapper = new ModuleWrapper(module.getClass());
+        if (!reserve(wrapper, () -> properties.getDuplicateFinder().register(this, module))) { return; }
+
+        try {
+            wrapper.module = Optional.of(module);
+            loadModule(wrapper, properties, knownProperties);
+        } finally {
+            finalizeWrapper(wrapper);
+        }
+    }
+
+    /**
+     * Actually load a module including dependencies.
+     */
+    private void loadModule(ModuleWrapper wrapper,
+                            RegistrationProperties properties,
+                            Optional<ModuleProperties> knownProperties) {
+        // search properties
+        wrapper.properties = Optional.of(knownProperties.orElseGet(() -> requireProperties(wrapper.module.get())));
+
+        // unregister excluded classes now that we know what they are
+        unregisterExcluded(wrapper);
+
+        initializeWithDependencies(wrapper, properties);
+    }
+
+    private ModuleProperties requireProperties(Object module) {
+        return findProperties(module).orElseThrow(() -> {
+            // no properties found, not a module
+            return new IllegalArgumentException(
+                    "No module properties found. Either annotate your module with @AnnotatedModule or extend the " +
+                    "Module class."
+            );
+        });
+    }
+
+    /**
+     * Load the dependencies of a module with known properties, initialize it and load its soft dependencies.
+     */
+    private void initializeWithDependencies(ModuleWrapper wrapper, RegistrationProperties properties) {
+        // load dependencies (this may throw)
+        wrapper.properties.get().getDependencies().forEach(clazz -> {
+            properties.getDependencyResolutionStrategy().loadDependency(this, clazz, properties);
+            // dependencies that were registered lazily must be loaded before us too
+            allUnloaded(clazz).forEach(this::materialize);
+        });
+
+        // dependencies loaded successfully, initialize
+        initialize(wrapper.module.get());
+
+        // no exceptions
+        wrapper.valid = true;
+        publish(wrapper);
+
+        // load soft dependencies (this may throw)
+        wrapper.properties.get().getSoftDependencies().forEach(clazz -> {
+            properties.getDependencyResolutionStrategy().loadDependency(this, clazz, properties);
+        });
+    }
+
+    /**
+     * Run the duplicate check of a module and, if it passes, register the module as loading.
+     * <p>
+     * Modules of the same type hierarchy that other threads are still loading are waited for first so the check sees
+     * their outcome, like it would if registration was done one module at a time. Modules this registration is already
+     * loading (circular dependencies) and modules whose owner is waiting for us are not waited for.
+     *
+     * @return whether the module was reserved.
+     */
+    private boolean reserve(ModuleWrapper wrapper, BooleanSupplier duplicateCheck) {
+        Set<Reservation> refused = new HashSet<>();
+        while (true) {
+            List<Reservation> pending;
+            Runnable unlock = typeLocks.lock(wrapper.of);
+            try {
+                pending = allUnloaded(wrapper.of)
+                        .filter(ModuleWrapper::isLoading)
+                        .map(other -> other.reservation)
+                        .filter(reservation -> !reservation.isOwnedByCurrentOwner() && !refused.contains(reservation))
+                        .collect(Collectors.toList());
+                if (pending.isEmpty()) {
+                    if (!duplicateCheck.getAsBoolean()) { return false; }
+                    wrapper.reservation = new Reservation();
+                    addWrapper(wrapper);
+                    return true;
+                }
+            } finally {
+                unlock.run();
+            }
+            for (Reservation reservation : pending) {
+                if (!reservation.await()) { refused.add(reservation); }
+            }
+        }
+    }
+
+    private void addWrapper(ModuleWrapper wrapper) {
+        TypeHierarchy.of(wrapper.of).getTypes().forEach(on -> {
+            // if no modules of the same class are registered yet we must create the list
+            SnapshotList<ModuleWrapper> collected = modules.computeIfAbsent(on, c -> new SnapshotList<>());
+
+            collected.add(wrapper);
+        });
+    }
+
+    private void finalizeWrapper(ModuleWrapper wrapper) {
+        // not loaded successfully
+        if (!wrapper.valid) {
+            TypeHierarchy.of(wrapper.of).getTypes().forEach(on -> unregisterWrapper(wrapper, on));
+        }
+        wrapper.reservation.complete();
+    }
+
+    private void unregisterExcluded(ModuleWrapper wrapper) {
+        wrapper.properties.get().getExcludedClasses().stream()
+                // keep object so all() works
+                .filter(c -> c != Object.class).forEach(on -> unregisterWrapper(wrapper, on));
+    }
+
+    private void unregisterWrapper(ModuleWrapper wrapper, Class<?> on) {
+        // must have been registered before so we can assume the mapping exists
+        modules.get(on).remove(wrapper);
+        ModuleRef.Slot slot = slots.get(on);
+        if (slot != null) { publish(slot, on); }
+    }
+
+    /**
+     * Republish the snapshots of all types the given module is registered as.
+     */
+    private void publish(ModuleWrapper wrapper) {
+        for (Class<?> on : TypeHierarchy.of(wrapper.of).getTypes()) {
+            ModuleRef.Slot slot = slots.get(on);
+            if (slot != null) { publish(slot, on); }
+        }
+    }
+
+    /**
+     * Update the snapshot of a type from the current registrations. Every change is followed by a publish, and
+     * publishing is serialized per slot, so the last snapshot written always includes the last change.
+     */
+    private void publish(ModuleRef.Slot slot, Class<?> clazz) {
+        synchronized (slot) {
+            slot.snapshot = computeSnapshot(clazz);
+        }
+    }
+
+    /**
+     * Compute the snapshot of the given type from the current registrations.
+     *
+     * @see ModuleRef.Slot#snapshot
+     */
+    private Object computeSnapshot(Class<?> clazz) {
+        Object snapshot = ModuleRef.ABSENT;
+        Iterator<ModuleWrapper> iterator = allUnloaded(clazz).iterator();
+        while (iterator.hasNext()) {
+            ModuleWrapper wrapper = iterator.next();
+            if (wrapper.valid) { return wrapper.module.get(); }
+            if (wrapper.lazy != null) { snapshot = ModuleRef.LAZY; }
+        }
+        return snapshot;
+    }
+
+    private void initialize(Object module) {
+        initializers.forEach(ini -> ini.initialize(this, module));
+    }
+
+    @RequiredArgsConstructor
+    @EqualsAndHashCode(of = {"of", "module"})
+    private class ModuleWrapper {
+        /**
+         * Base class
+         */
+        @NonNull private final Class<?> of;
+        /**
+         * Module, empty during registration
+         */
+        @NonNull private Optional<Object> module = Optional.empty();
+        /**
+         * Properties, empty during registration
+         */
+        @NonNull private Optional<ModuleProperties> properties = Optional.empty();
+        /**
+         * Only true after successful registration. Volatile because bulk registration initializes modules on other
+         * threads.
+         */
+        private volatile boolean valid = false;
+        /**
+         * Set when the module is reserved, before it is visible to other threads, and replaced when a lazy module
+         * starts loading.
+         */
+        private volatile Reservation reservation;
+        /**
+         * The registration properties if the module was registered lazily, null otherwise. Set after the module was
+         * reserved, volatile so lookups that see it also see the properties.
+         */
+        private volatile RegistrationProperties lazy;
+        /**
+         * Whether loading of a lazy module has started.
+         */
+        @GuardedBy("this")
+        private volatile boolean materializing = false;
+
+        /**
+         * Whether the module is being loaded right now, as opposed to loaded or lazily waiting to be loaded. A module
+         * is only loaded once its reservation is complete, which is after its snapshots were republished and its soft
+         * dependencies loaded.
+         */
+        boolean isLoading() {
+            return !reservation.isComplete();
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.lang.ref.WeakReference;
+import java.util.Optional;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Cached handle to a module type of a ModuleManager. The manager republishes the module whenever the registrations
+ * of the type change, so resolving the handle is a single volatile read.
+ *
+ * @author Jonas Konrad (yawkat)
+ * @see ModuleManager#ref(Class)
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+@ThreadSafe
+public final class ModuleRef<M> {
+    /**
+     * Snapshot value if no module of the type is registered.
+     */
+    static final Object ABSENT = new Object();
+    /**
+     * Snapshot value if no module of the type is loaded but a lazily registered one may be.
+     */
+    static final Object LAZY = new Object();
+
+    private final ModuleManager manager;
+    @Getter @NonNull private final Class<M> type;
+    private final Slot slot;
+
+    /**
+     * Return the module.
+     *
+     * @throws java.lang.IllegalStateException if no module of that type is registered.
+     */
+    @NonNull
+    public M get() {
+        return get(manager, type, slot.snapshot);
+    }
+
+    /**
+     * Returns whether a module of the type exists. Lazily registered modules count without being loaded.
+     */
+    public boolean isPresent() {
+        return slot.snapshot != ABSENT;
+    }
+
+    /**
+     * Returns the module or an empty optional if none is registered.
+     */
+    @NonNull
+    public Optional<M> optional() {
+        return optional(manager, type, slot.snapshot);
+    }
+
+    /**
+     * Resolve a snapshot of the given type, loading a lazy module if necessary.
+     *
+     * @throws java.lang.IllegalStateException if no module of that type is registered.
+     */
+    @SuppressWarnings("unchecked")
+    static <M> M get(ModuleManager manager, Class<M> type, Object snapshot) {
+        if (snapshot != ABSENT && snapshot != LAZY) { return (M) snapshot; }
+        if (snapshot == LAZY) {
+            Optional<M> loaded = manager.all(type).findAny();
+            if (loaded.isPresent()) { return loaded.get(); }
+        }
+        throw new IllegalStateException("No such module: " + type);
+    }
+
+    /**
+     * Resolve a snapshot of the given type, loading a lazy module if necessary.
+     */
+    @SuppressWarnings("unchecked")
+    static <M> Optional<M> optional(ModuleManager manager, Class<M> type, Object snapshot) {
+        if (snapshot == ABSENT) { return Optional.empty(); }
+        // loading the lazy module republishes the snapshot
+        if (snapshot == LAZY) { return manager.all(type).findAny(); }
+        return Optional.of((M) snapshot);
+    }
+
+    /**
+     * The current snapshot of a type, shared by the manager's own lookups and the ref handed out for the type. It
+     * doesn't reference the type so the manager can hold it under a weak key.
+     */
+    static final class Slot {
+        /**
+         * A module of the type, {@link #ABSENT} or {@link #LAZY}. Only written by the manager.
+         */
+        volatile Object snapshot;
+        /**
+         * The ref handed out for this slot, if it is still in use.
+         */
+        @GuardedBy("this") WeakReference<ModuleRef<?>> ref;
+
+        Slot(Object snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+}
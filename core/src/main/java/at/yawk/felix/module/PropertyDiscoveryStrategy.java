@@ -25,4 +25,15 @@ public interface PropertyDiscoveryStrategy {
      */
     @NonNull
     Optional<ModuleProperties> findProperties(@NonNull Object module);
+
+    /**
+     * Try to find the properties of a module class without an instance of it. Used for lazy registration, where
+     * modules are only instantiated once they are needed.
+     *
+     * @return The found properties or an empty optional if this strategy needs an instance of the module.
+     */
+    @NonNull
+    default Optional<ModuleProperties> findClassProperties(@NonNull Class<?> type) {
+        return Optional.empty();
+    }
 }
@@ -25,4 +25,10 @@ public class RegistrationProperties {
 
     private DependencyResolutionStrategy dependencyResolutionStrategy = DependencyResolutionStrategy.REGISTER;
     @Wither(AccessLevel.PACKAGE) private DuplicateFinder duplicateFinder = DuplicateFinder.IGNORE_DUPLICATE_CLASSES;
+    /**
+     * If true, modules registered by class are only recorded and are instantiated and initialized, together with
+     * their dependencies, the first time they are looked up. The properties of lazy modules must be discoverable from
+     * their class, so extensions of the Module class can't be registered lazily.
+     */
+    private boolean lazy = false;
 }
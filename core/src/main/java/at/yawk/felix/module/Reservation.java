@@ -0,0 +1,117 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A module registration in progress. Threads that need a module that is still being loaded wait for its reservation,
+ * unless that would deadlock: waits that close a cycle of owners waiting for each other's reservations are refused,
+ * which lets circular dependencies across threads resolve like they do within one thread.
+ * <p>
+ * Reservations belong to an owner, which is the registering thread unless the work is delegated to other threads
+ * using {@link #runAs(Object, Runnable)}.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+final class Reservation {
+    private static final ThreadLocal<Object> currentOwner = ThreadLocal.withInitial(Object::new);
+
+    /**
+     * Reservations each owner is currently waiting for.
+     */
+    @GuardedBy("waits")
+    private static final Map<Object, List<Reservation>> waits = new HashMap<>();
+
+    final Object owner = currentOwner();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /**
+     * The owner of the work done by the current thread.
+     */
+    static Object currentOwner() {
+        return currentOwner.get();
+    }
+
+    /**
+     * Run a task on the current thread on behalf of the given owner.
+     */
+    static void runAs(Object owner, Runnable task) {
+        Object previous = currentOwner.get();
+        currentOwner.set(owner);
+        try {
+            task.run();
+        } finally {
+            currentOwner.set(previous);
+        }
+    }
+
+    boolean isOwnedByCurrentOwner() {
+        return owner == currentOwner();
+    }
+
+    /**
+     * Whether the registration is done.
+     */
+    boolean isComplete() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * Mark the registration as done, successful or not, and wake up waiting threads.
+     */
+    void complete() {
+        done.countDown();
+    }
+
+    /**
+     * Wait for the registration to complete.
+     *
+     * @return false if we did not wait because the owner of this reservation is (indirectly) waiting for us.
+     */
+    boolean await() {
+        Object self = currentOwner();
+        synchronized (waits) {
+            if (waitsFor(owner, self, new HashSet<>())) { return false; }
+            waits.computeIfAbsent(self, o -> new ArrayList<>()).add(this);
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // registration methods can't throw InterruptedException, keep waiting and restore the flag after
+                    interrupted = true;
+                }
+            }
+        } finally {
+            synchronized (waits) {
+                List<Reservation> waiting = waits.get(self);
+                waiting.remove(this);
+                if (waiting.isEmpty()) { waits.remove(self); }
+            }
+            if (interrupted) { Thread.currentThread().interrupt(); }
+        }
+        return true;
+    }
+
+    @GuardedBy("waits")
+    private static boolean waitsFor(Object from, Object target, Set<Object> visited) {
+        if (from == target) { return true; }
+        if (!visited.add(from)) { return false; }
+        for (Reservation reservation : waits.getOrDefault(from, Collections.emptyList())) {
+            if (waitsFor(reservation.owner, target, visited)) { return true; }
+        }
+        return false;
+    }
+}
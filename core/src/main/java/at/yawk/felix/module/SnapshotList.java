@@ -0,0 +1,79 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * List of the modules registered as one type. Unlike a CopyOnWriteArrayList, appending writes into spare capacity of
+ * a growable array and only publishes a new (array, size) snapshot, so registering n modules costs O(n) instead of
+ * O(n²). Removal, which only happens for failed registrations and excluded types, copies the array.
+ * <p>
+ * A slot of an array is never written again once a published snapshot covers it, so readers can iterate a snapshot
+ * without locking.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+final class SnapshotList<T> {
+    private static final Object[] EMPTY = new Object[0];
+
+    private volatile Snapshot snapshot = new Snapshot(EMPTY, 0);
+
+    /**
+     * Append an element.
+     */
+    synchronized void add(T element) {
+        Snapshot current = snapshot;
+        Object[] elements = current.elements;
+        if (current.size == elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(4, elements.length * 2));
+        }
+        elements[current.size] = element;
+        snapshot = new Snapshot(elements, current.size + 1);
+    }
+
+    /**
+     * Remove the given element, compared by identity.
+     *
+     * @return whether the element was found.
+     */
+    synchronized boolean remove(T element) {
+        Snapshot current = snapshot;
+        for (int i = 0; i < current.size; i++) {
+            if (current.elements[i] == element) {
+                Object[] elements = new Object[current.elements.length];
+                System.arraycopy(current.elements, 0, elements, 0, i);
+                System.arraycopy(current.elements, i + 1, elements, i, current.size - i - 1);
+                snapshot = new Snapshot(elements, current.size - 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stream the elements at the time of this call.
+     */
+    @SuppressWarnings("unchecked")
+    Stream<T> stream() {
+        Snapshot current = snapshot;
+        return (Stream<T>) Arrays.stream(current.elements, 0, current.size);
+    }
+
+    @RequiredArgsConstructor
+    private static final class Snapshot {
+        /**
+         * Slots from size on may be written by later appends.
+         */
+        private final Object[] elements;
+        private final int size;
+    }
+}
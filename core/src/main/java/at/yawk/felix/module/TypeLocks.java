@@ -0,0 +1,54 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import at.yawk.felix.TypeHierarchy;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Per-type locks used to make the duplicate check and the reservation of a module type atomic.
+ * <p>
+ * Reserving a type looks at the modules registered as that type and adds the new module to the lists of all its
+ * supertypes. Two reservations therefore only conflict if one type is a supertype of the other, so the reserved type
+ * is locked exclusively and its supertypes shared: unrelated types that share interfaces or Object don't block each
+ * other. Locks are always acquired in type ID order to avoid deadlocks.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+@ThreadSafe
+final class TypeLocks {
+    private final ConcurrentMap<Class<?>, ReadWriteLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Lock the given type exclusively and its supertypes shared.
+     *
+     * @return an action that releases the locks.
+     */
+    Runnable lock(Class<?> type) {
+        List<Lock> held = TypeHierarchy.of(type).getTypes().stream()
+                .sorted(Comparator.comparingInt(t -> TypeHierarchy.of(t).getId()))
+                .map(t -> {
+                    ReadWriteLock lock = locks.computeIfAbsent(t, k -> new ReentrantReadWriteLock());
+                    return t == type ? lock.writeLock() : lock.readLock();
+                })
+                .collect(Collectors.toList());
+        held.forEach(Lock::lock);
+        return () -> {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        };
+    }
+}
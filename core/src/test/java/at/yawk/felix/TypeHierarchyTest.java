@@ -0,0 +1,41 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix;
+
+import static org.junit.Assert.*;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class TypeHierarchyTest {
+    @Test
+    public void testTypes() {
+        // J is reached through A first
+        assertEquals(Arrays.asList(C.class, B.class, A.class, Object.class, J.class, Serializable.class, I.class),
+                     TypeHierarchy.of(C.class).getTypes());
+        assertSame(TypeHierarchy.of(C.class), TypeHierarchy.of(C.class));
+    }
+
+    @Test
+    public void testIdOrder() {
+        TypeHierarchy c = TypeHierarchy.of(C.class);
+        for (Class<?> supertype : c.getTypes().subList(1, c.getTypes().size())) {
+            assertTrue(TypeHierarchy.of(supertype).getId() < c.getId());
+        }
+    }
+
+    private interface J extends Serializable {}
+
+    private interface I extends J {}
+
+    private static class A implements J {}
+
+    private static class B extends A {}
+
+    private static class C extends B implements I {}
+}
@@ -0,0 +1,761 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import static org.junit.Assert.*;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class EventBusTest {
+    @Test
+    public void testRegister() {
+        EventBus bus = EventBus.create();
+        AtomicInteger callCount = new AtomicInteger(0);
+        bus.post(new Object());
+        assertEquals(0, callCount.get());
+        bus.subscribe(Object.class, event -> callCount.incrementAndGet(), 0);
+        bus.post(new Object());
+        assertEquals(1, callCount.get());
+    }
+
+    @Test
+    public void testPriority() {
+        EventBus bus = EventBus.create();
+        AtomicInteger calledPriority = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        for (int i = 1; i < 5; i++) {
+            int priority = i;
+            bus.subscribe(Object.class, event -> {
+                failed.compareAndSet(false, calledPriority.getAndSet(priority) < priority);
+            }, priority);
+        }
+        assertFalse(failed.get());
+    }
+
+    @Test
+    public void testHierarchyPriority() {
+        EventBus bus = EventBus.create();
+        List<String> calls = new ArrayList<>();
+        bus.subscribe(Object.class, event -> calls.add("object"), 1);
+        bus.subscribe(CharSequence.class, event -> calls.add("charSequence"), 2);
+        bus.subscribe(String.class, event -> calls.add("string"), 0);
+        bus.post("event");
+        assertEquals(Arrays.asList("charSequence", "object", "string"), calls);
+    }
+
+    @Test
+    public void testDeadEvents() {
+        EventBus bus = EventBus.create();
+        List<Object> dead = new ArrayList<>();
+        bus.subscribe(DeadEvent.class, event -> dead.add(event.getEvent()));
+        bus.post("unhandled");
+        assertEquals(Collections.emptyList(), dead);
+
+        bus.setDeliverDeadEvents(true);
+        bus.post("a");
+        SubscribeHandle handle = bus.subscribe(CharSequence.class, event -> {});
+        bus.post("b");
+        handle.unsubscribe();
+        bus.post("c");
+        // keyed handlers that don't match don't count either
+        bus.subscribe(String.class, String::length, 2, event -> {});
+        bus.post("d");
+        bus.post("ee");
+        assertEquals(Arrays.asList("a", "c", "d"), dead);
+    }
+
+    @Test
+    public void testPostAll() {
+        EventBus bus = EventBus.create();
+        List<String> calls = new ArrayList<>();
+        bus.subscribe(Object.class, event -> calls.add("object:" + event), 1);
+        bus.subscribe(String.class, event -> calls.add("string:" + event), 2);
+        bus.subscribe(Integer.class, event -> calls.add("integer:" + event), 0);
+        bus.postAll(Arrays.asList("a", 1, "b"));
+        assertEquals(Arrays.asList("string:a", "string:b", "object:a", "object:b", "object:1", "integer:1"), calls);
+    }
+
+    @Test
+    public void testPostAllKeyed() {
+        EventBus bus = EventBus.create();
+        bus.setDeliverDeadEvents(true);
+        List<Object> calls = new ArrayList<>();
+        bus.subscribe(String.class, String::length, 1, calls::add);
+        bus.subscribe(DeadEvent.class, event -> calls.add("dead:" + event.getEvent()));
+        bus.postAll(new Object[]{ "a", "bb", "c", 1 });
+        assertEquals(Arrays.asList("a", "dead:bb", "c", "dead:1"), calls);
+    }
+
+    @Test
+    public void testPostAllParallel() {
+        EventBus bus = EventBus.create();
+        Set<Object> seen = ConcurrentHashMap.newKeySet();
+        AtomicBoolean outOfOrder = new AtomicBoolean();
+        bus.subscribe(Integer.class, seen::add, 1);
+        bus.subscribe(Integer.class, event -> outOfOrder.compareAndSet(false, seen.size() != 1000), 0);
+        Object[] events = new Object[1000];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = i;
+        }
+        bus.postAllParallel(events);
+        assertEquals(1000, seen.size());
+        assertFalse(outOfOrder.get());
+    }
+
+    @Test
+    public void testSubscribeBatchBySize() throws Exception {
+        EventBus bus = EventBus.create();
+        BlockingQueue<List<Integer>> batches = new LinkedBlockingQueue<>();
+        bus.subscribeBatch(Integer.class, 3, 1, TimeUnit.HOURS, batches::add);
+        for (int i = 0; i < 7; i++) {
+            bus.post(i);
+        }
+        assertEquals(Arrays.asList(0, 1, 2), batches.poll(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(3, 4, 5), batches.poll(10, TimeUnit.SECONDS));
+        // the last window is delivered on shutdown
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(6), batches.poll());
+    }
+
+    @Test
+    public void testSubscribeBatchByDelay() throws Exception {
+        EventBus bus = EventBus.create();
+        BlockingQueue<List<String>> batches = new LinkedBlockingQueue<>();
+        SubscribeHandle handle = bus.subscribeBatch(String.class, 100, 10, TimeUnit.MILLISECONDS, batches::add);
+        bus.postAll(Arrays.asList("a", "b"));
+        assertEquals(Arrays.asList("a", "b"), batches.poll(10, TimeUnit.SECONDS));
+        bus.post("c");
+        assertEquals(Collections.singletonList("c"), batches.poll(10, TimeUnit.SECONDS));
+        handle.unsubscribe();
+
+        // unsubscribing delivers the open window
+        SubscribeHandle other = bus.subscribeBatch(String.class, 100, 1, TimeUnit.HOURS, batches::add);
+        bus.post("d");
+        other.unsubscribe();
+        assertEquals(Collections.singletonList("d"), batches.poll(10, TimeUnit.SECONDS));
+        assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        EventBus bus = EventBus.create();
+        RecordingEventBusMetrics metrics = new RecordingEventBusMetrics();
+        bus.setMetrics(metrics);
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe(String.class, delivered::add);
+        // coalesce by first letter, the windows only end on shutdown
+        bus.coalesce(CharSequence.class, event -> event.charAt(0), 1, TimeUnit.HOURS);
+
+        CompletableFuture<String> a1 = bus.postAsync("a1");
+        bus.postAsync("b1");
+        bus.postAsync("a2");
+        CompletableFuture<String> a3 = bus.postAsync("a3");
+        assertEquals("a1", a1.get(10, TimeUnit.SECONDS));
+        assertFalse(a3.isDone());
+        assertEquals(2, bus.getCoalescedEventCount());
+
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals("a3", a3.get());
+        assertEquals(new HashSet<>(Arrays.asList("a3", "b1")), new HashSet<>(delivered));
+        assertEquals(2, bus.getCoalescedEventCount());
+        assertEquals(2, metrics.getEventStats(String.class).getCoalesced());
+    }
+
+    @Test
+    public void testCoalesceWindow() throws Exception {
+        EventBus bus = EventBus.create();
+        BlockingQueue<Integer> delivered = new LinkedBlockingQueue<>();
+        bus.subscribe(Integer.class, delivered::add);
+        bus.coalesce(Integer.class, event -> "all", 10, TimeUnit.MILLISECONDS);
+        bus.postAsync(1);
+        bus.postAsync(2);
+        assertEquals(Integer.valueOf(2), delivered.poll(10, TimeUnit.SECONDS));
+        // a new window opens after the first one ended
+        bus.postAsync(3).get(10, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(3), delivered.poll());
+    }
+
+    @Test
+    public void testSubscribeAfterPost() {
+        EventBus bus = EventBus.create();
+        AtomicInteger callCount = new AtomicInteger(0);
+        bus.post("event");
+        SubscribeHandle handle = bus.subscribe(CharSequence.class, event -> callCount.incrementAndGet());
+        bus.post("event");
+        assertEquals(1, callCount.get());
+        handle.unsubscribe();
+        bus.post("event");
+        assertEquals(1, callCount.get());
+    }
+
+    @Test
+    public void testSubscribeAll() {
+        EventBus bus = EventBus.create();
+        List<Integer> calledPriorities = new ArrayList<>();
+        Random random = new Random(0);
+        List<EventHandler<?>> handlers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int priority = random.nextInt(50);
+            handlers.add(new EventHandler<>(Object.class, event -> calledPriorities.add(priority), priority));
+        }
+        bus.subscribe(Object.class, event -> calledPriorities.add(25), 25);
+        SubscribeHandle handle = bus.subscribeAll(handlers);
+
+        bus.post(new Object());
+        assertEquals(1001, calledPriorities.size());
+        for (int i = 1; i < calledPriorities.size(); i++) {
+            assertTrue(calledPriorities.get(i - 1) >= calledPriorities.get(i));
+        }
+
+        handle.unsubscribe();
+        calledPriorities.clear();
+        bus.post(new Object());
+        assertEquals(Collections.singletonList(25), calledPriorities);
+    }
+
+    @Test
+    public void testSubscribeSameHandlerTwice() {
+        EventBus bus = EventBus.create();
+        AtomicInteger callCount = new AtomicInteger(0);
+        EventHandler<Object> handler = new EventHandler<>(Object.class, event -> callCount.incrementAndGet(), 0);
+        SubscribeHandle first = bus.subscribeEventHandler(handler);
+        bus.subscribeEventHandler(handler);
+        first.unsubscribe();
+        bus.post(new Object());
+        assertEquals(1, callCount.get());
+    }
+
+    @Test
+    public void testPostAsync() throws Exception {
+        EventBus bus = EventBus.create();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            bus.setAsyncExecutor(executor);
+            List<Integer> calledPriorities = Collections.synchronizedList(new ArrayList<>());
+            Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+            for (int i = 0; i < 5; i++) {
+                int priority = i;
+                bus.subscribe(Object.class, event -> {
+                    threads.add(Thread.currentThread());
+                    calledPriorities.add(priority);
+                }, priority);
+            }
+            Object event = new Object();
+            assertSame(event, bus.postAsync(event).get(10, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(4, 3, 2, 1, 0), calledPriorities);
+            assertFalse(threads.contains(Thread.currentThread()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPostAsyncShutdown() throws Exception {
+        EventBus bus = EventBus.create();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean delivered = new AtomicBoolean(false);
+        bus.subscribe(Object.class, event -> {
+            release.await();
+            delivered.set(true);
+        });
+        bus.setAsyncExecutor(runnable -> new Thread(runnable).start());
+        CompletableFuture<Object> future = bus.postAsync(new Object());
+
+        bus.shutdown();
+        assertTrue(bus.isShutdown());
+        try {
+            bus.postAsync(new Object());
+            fail();
+        } catch (RejectedExecutionException expected) {}
+        assertFalse(bus.awaitTermination(50, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(bus.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(delivered.get());
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void testAwaitTerminationWaitsForSerialHandler() throws Exception {
+        EventBus bus = EventBus.create();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        bus.setAsyncExecutor(executor);
+        try {
+            BlockingSerialHandler handler = new BlockingSerialHandler();
+            bus.subscribe(handler);
+            // the idle handler is called on the task posting the first event and blocks it
+            bus.postAsync("first");
+            assertTrue(handler.running.await(10, TimeUnit.SECONDS));
+
+            // the future completes once the event is queued behind the blocked one
+            bus.postAsync("second").get(10, TimeUnit.SECONDS);
+            bus.shutdown();
+            assertFalse(bus.awaitTermination(50, TimeUnit.MILLISECONDS));
+
+            handler.release.countDown();
+            assertTrue(bus.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList("first", "second"), handler.handled);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSerialHandler() throws Exception {
+        EventBus bus = EventBus.create();
+        SerialHandler handler = new SerialHandler();
+        bus.subscribe(handler);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    bus.post("event");
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(40_000, handler.calls);
+        assertFalse(handler.overlapped);
+    }
+
+    @Test
+    public void testSerialHandlerDoesNotBlockPost() throws Exception {
+        EventBus bus = EventBus.create();
+        BlockingSerialHandler handler = new BlockingSerialHandler();
+        List<String> others = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe(handler);
+        // a lower priority than the serial handler, but it is still called during the post
+        bus.subscribe(String.class, others::add, EventHandler.DEFAULT_PRIORITY - 1);
+
+        Thread first = new Thread(() -> bus.post("first"));
+        first.start();
+        assertTrue(handler.running.await(10, TimeUnit.SECONDS));
+        // the serial handler is busy, posting only queues the event for it
+        bus.post("second");
+        assertEquals(Collections.singletonList("second"), others);
+        assertTrue(handler.handled.isEmpty());
+
+        handler.release.countDown();
+        first.join();
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("first", "second"), handler.handled);
+    }
+
+    @Test
+    public void testIdleSerialHandlerCalledDuringPost() {
+        EventBus bus = EventBus.create();
+        List<String> calls = new ArrayList<>();
+        bus.subscribe(String.class, event -> calls.add("high"), EventHandler.DEFAULT_PRIORITY + 1);
+        bus.subscribe(new Object() {
+            @Subscribe(parallel = false)
+            public void onEvent(String event) {
+                calls.add("serial");
+            }
+        });
+        bus.subscribe(String.class, event -> calls.add("low"), EventHandler.DEFAULT_PRIORITY - 1);
+
+        bus.post("event");
+        assertEquals(Arrays.asList("high", "serial", "low"), calls);
+    }
+
+    @Test
+    public void testSerialHandlerPerInstance() throws Exception {
+        // both instances must be able to run at the same time to pass the barrier
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        testConcurrentCalls(new BarrierHandler(barrier), new BarrierHandler(barrier));
+    }
+
+    @Test
+    public void testGuavaAllowConcurrentEvents() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        testConcurrentCalls(new Object() {
+            @com.google.common.eventbus.Subscribe
+            @com.google.common.eventbus.AllowConcurrentEvents
+            public void onEvent(String event) throws Exception {
+                barrier.await(10, TimeUnit.SECONDS);
+            }
+        });
+    }
+
+    private void testConcurrentCalls(Object... handlers) throws Exception {
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        EventBus bus = EventBus.create(new ExceptionHandler() {
+            @Override
+            public <Event> void onException(Event event, Throwable throwable, EventHandler<? super Event> h) {
+                thrown.set(throwable);
+            }
+        });
+        // serial handlers are called on the async executor, make sure it can run them concurrently
+        ExecutorService executor = Executors.newCachedThreadPool();
+        bus.setAsyncExecutor(executor);
+        try {
+            for (Object handler : handlers) {
+                bus.subscribe(handler);
+            }
+            Thread other = new Thread(() -> bus.post("event"));
+            other.start();
+            bus.post("event");
+            other.join();
+            bus.shutdown();
+            assertTrue(bus.awaitTermination(20, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+        assertNull(thrown.get());
+    }
+
+    @Test
+    public void testKeyedSubscribe() {
+        EventBus bus = EventBus.create();
+        List<String> calls = new ArrayList<>();
+        Function<CharSequence, Object> length = CharSequence::length;
+        bus.subscribe(CharSequence.class, length, 1, event -> calls.add("1:" + event), 1);
+        bus.subscribe(CharSequence.class, length, 2, event -> calls.add("2:" + event), 3);
+        SubscribeHandle handle = bus.subscribe(String.class, String::length, 2, event -> calls.add("2s:" + event));
+        bus.subscribe(Object.class, event -> calls.add("all:" + event), 2);
+
+        bus.post("a");
+        assertEquals(Arrays.asList("all:a", "1:a"), calls);
+        calls.clear();
+
+        bus.post("bb");
+        assertEquals(Arrays.asList("2:bb", "all:bb", "2s:bb"), calls);
+        calls.clear();
+
+        handle.unsubscribe();
+        bus.post("cc");
+        bus.post("ddd");
+        assertEquals(Arrays.asList("2:cc", "all:cc", "all:ddd"), calls);
+    }
+
+    @Test
+    public void testMetrics() {
+        EventBus bus = EventBus.create(new ExceptionHandler() {
+            @Override
+            public <Event> void onException(Event event, Throwable throwable, EventHandler<? super Event> handler) {}
+        });
+        RecordingEventBusMetrics metrics = new RecordingEventBusMetrics();
+        bus.setMetrics(metrics);
+        EventHandler<String> failing = new EventHandler<>(String.class, event -> {
+            throw new Exception();
+        }, 0);
+        bus.subscribeEventHandler(failing);
+        bus.subscribe(Object.class, event -> {});
+
+        bus.post("event");
+        bus.post("event");
+        bus.post(new Object());
+
+        assertEquals(2, metrics.getEventStats(String.class).getCount());
+        assertEquals(2, metrics.getEventStats(String.class).getExceptions());
+        assertEquals(4, metrics.getEventStats(String.class).getLatency().getCount());
+        assertEquals(1, metrics.getEventStats(Object.class).getCount());
+        assertEquals(2, metrics.getHandlerStats().get(failing).getExceptions());
+        assertEquals(0, metrics.getEventStats(Integer.class).getCount());
+
+        Map<String, Double> exported = new HashMap<>();
+        metrics.export(String::valueOf, exported::put);
+        assertEquals(2, exported.get("event." + String.class + ".count"), 0);
+
+        bus.setMetrics(EventBusMetrics.NONE);
+        bus.post("event");
+        assertEquals(2, metrics.getEventStats(String.class).getCount());
+    }
+
+    @Test
+    public void testMetricsSeparateEqualHandlers() {
+        EventBus bus = EventBus.create(new ExceptionHandler() {
+            @Override
+            public <Event> void onException(Event event, Throwable throwable, EventHandler<? super Event> handler) {}
+        });
+        RecordingEventBusMetrics metrics = new RecordingEventBusMetrics();
+        bus.setMetrics(metrics);
+        EventHandler.ThrowingConsumer<String> consumer = event -> {
+            throw new Exception();
+        };
+        EventHandler<String> first = new EventHandler<>(String.class, consumer, 0);
+        EventHandler<String> second = new EventHandler<>(String.class, consumer, 0);
+        assertEquals(first, second);
+        bus.subscribeEventHandler(first);
+        bus.subscribeEventHandler(second);
+
+        bus.post("event");
+        assertEquals(1, metrics.getHandlerStats(first).getExceptions());
+        assertEquals(1, metrics.getHandlerStats(second).getExceptions());
+        assertEquals(2, metrics.getHandlerStats().size());
+    }
+
+    @Test
+    public void testPostDoesNotAllocate() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        EventBus bus = EventBus.create();
+        long[] counter = { 0 };
+        bus.subscribe(Object.class, event -> counter[0]++);
+        bus.subscribe(CharSequence.class, event -> counter[0]++, 5);
+        bus.subscribe(new PublicHandler());
+        String event = "event";
+
+        // warm up so the dispatch table is compiled and the loop is jitted
+        for (int i = 0; i < 200_000; i++) {
+            bus.post(event);
+        }
+
+        int posts = 2_000_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < posts; i++) {
+            bus.post(event);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(2 * (200_000L + posts), counter[0]);
+        // a single allocation per post would add up to tens of megabytes, allow some slack for the measurement itself
+        assertTrue("Allocated " + allocated + " bytes for " + posts + " posts", allocated < 64 * 1024);
+    }
+
+    @Test
+    public void testSubscribe() {
+        EventBus bus = EventBus.create();
+        AtomicBoolean called = new AtomicBoolean(false);
+        bus.subscribe(new Object() {
+            @Subscribe
+            public void onEvent(Object event) {
+                called.set(true);
+            }
+        });
+        bus.post(new Object());
+        assertTrue(called.get());
+    }
+
+    @Test
+    public void testUnsubscribe() {
+        EventBus bus = EventBus.create();
+        AtomicBoolean called = new AtomicBoolean(false);
+        bus.subscribe(new Object() {
+            @Subscribe
+            public void onEvent(Object event) {
+                called.set(false);
+            }
+        }).unsubscribe();
+        bus.post(new Object());
+        assertFalse(called.get());
+    }
+
+    @Test
+    public void testSubscribeGuava() {
+        EventBus bus = EventBus.create();
+        AtomicBoolean called = new AtomicBoolean(false);
+        bus.subscribe(new Object() {
+            @com.google.common.eventbus.Subscribe
+            public void onEvent(Object event) {
+                called.set(true);
+            }
+        });
+        bus.post(new Object());
+        assertTrue(called.get());
+    }
+
+    @Test
+    public void testInheritance1() {
+        testInheritance(new Handler(), true);
+    }
+
+    @Test
+    public void testInheritance2() {
+        testInheritance(new Handler() {}, true);
+    }
+
+    @Test
+    public void testInheritance3() {
+        testInheritance(new Handler() {
+            @Override
+            public void onEvent(Object event) {
+                super.onEvent(event);
+            }
+        }, true);
+    }
+
+    @Test
+    public void testInheritance4() {
+        testInheritance(new Handler() {
+            @Override
+            public void onEvent(Object event) {}
+        }, false);
+    }
+
+    @Test
+    public void testInheritance5() {
+        testInheritance(new Handler() {
+            @Override
+            @Subscribe
+            public void onEvent(Object event) {}
+        }, false);
+    }
+
+    @Test
+    public void testSubscribePublicHandler() {
+        EventBus bus = EventBus.create();
+        PublicHandler handler = new PublicHandler();
+        bus.subscribe(handler);
+        bus.post("event");
+        assertEquals(1, handler.calls);
+        bus.post(new Object());
+        assertEquals(1, handler.calls);
+    }
+
+    @Test
+    public void testSubscribeSameClassTwice() {
+        EventBus bus = EventBus.create();
+        PublicHandler first = new PublicHandler();
+        PublicHandler second = new PublicHandler();
+        bus.subscribe(first);
+        SubscribeHandle handle = bus.subscribe(second);
+        bus.post("event");
+        handle.unsubscribe();
+        bus.post("event");
+        assertEquals(2, first.calls);
+        assertEquals(1, second.calls);
+    }
+
+    @Test
+    public void testSubscribeStaticHandler() {
+        EventBus bus = EventBus.create();
+        StaticHandler.calls.set(0);
+        bus.subscribe(new StaticHandler());
+        bus.post("event");
+        assertEquals(1, StaticHandler.calls.get());
+    }
+
+    @Test
+    public void testHandlerExceptionUnwrapped() {
+        testHandlerExceptionUnwrapped(new PublicHandler());
+        testHandlerExceptionUnwrapped(new Object() {
+            @Subscribe
+            public void onEvent(Integer event) {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    private void testHandlerExceptionUnwrapped(Object handler) {
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        EventBus bus = EventBus.create(new ExceptionHandler() {
+            @Override
+            public <Event> void onException(Event event, Throwable throwable, EventHandler<? super Event> h) {
+                thrown.set(throwable);
+            }
+        });
+        bus.subscribe(handler);
+        bus.post(5);
+        assertTrue(thrown.get() instanceof UnsupportedOperationException);
+    }
+
+    private void testInheritance(Handler handler, boolean result) {
+        EventBus bus = EventBus.create();
+        bus.subscribe(handler);
+        bus.post(new Object());
+        assertEquals(result, handler.called);
+    }
+
+    private class Handler {
+        boolean called = false;
+
+        @Subscribe
+        public void onEvent(Object event) {
+            called = true;
+        }
+    }
+
+    public static class PublicHandler {
+        int calls = 0;
+
+        @Subscribe
+        public void onEvent(String event) {
+            calls++;
+        }
+
+        @Subscribe
+        public void onEvent(Integer event) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static class StaticHandler {
+        static final AtomicInteger calls = new AtomicInteger();
+
+        @Subscribe
+        public static void onEvent(String event) {
+            calls.incrementAndGet();
+        }
+    }
+
+    private static class SerialHandler {
+        final AtomicBoolean running = new AtomicBoolean(false);
+        volatile boolean overlapped = false;
+        int calls = 0;
+
+        @Subscribe(parallel = false)
+        public void onEvent(String event) {
+            if (!running.compareAndSet(false, true)) { overlapped = true; }
+            calls++;
+            running.set(false);
+        }
+    }
+
+    private static class BlockingSerialHandler {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> handled = Collections.synchronizedList(new ArrayList<>());
+
+        @Subscribe(parallel = false)
+        public void onEvent(String event) throws InterruptedException {
+            // later events pass once the first one is released
+            running.countDown();
+            release.await();
+            handled.add(event);
+        }
+    }
+
+    private static class BarrierHandler {
+        final CyclicBarrier barrier;
+        int calls = 0;
+
+        BarrierHandler(CyclicBarrier barrier) {
+            this.barrier = barrier;
+        }
+
+        @Subscribe(parallel = false)
+        public void onEvent(String event) throws Exception {
+            // only the first event per instance waits, the second one is queued behind it
+            if (calls++ == 0) {
+                barrier.await(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
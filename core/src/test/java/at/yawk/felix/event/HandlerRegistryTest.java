@@ -0,0 +1,30 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import org.junit.Test;
+
+public class HandlerRegistryTest {
+    @Test
+    public void testUnrelatedChangeKeepsDispatch() {
+        HandlerRegistry registry = new HandlerRegistry();
+        registry.add(Collections.singletonList(new EventHandler<>(String.class, event -> {}, 0)));
+        HandlerRegistry.Dispatch dispatch = registry.getDispatch(String.class);
+        assertEquals(1, dispatch.handlers.length);
+
+        registry.add(Collections.singletonList(new EventHandler<>(Integer.class, event -> {}, 0)));
+        assertSame(dispatch, registry.getDispatch(String.class));
+
+        registry.add(Collections.singletonList(new EventHandler<>(CharSequence.class, event -> {}, 0)));
+        HandlerRegistry.Dispatch recompiled = registry.getDispatch(String.class);
+        assertNotSame(dispatch, recompiled);
+        assertEquals(2, recompiled.handlers.length);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class PartitionedPipelineTest {
+    @Test
+    public void testPartitionOrder() throws Exception {
+        int keys = 16;
+        int eventsPerKey = 20_000;
+
+        EventBus bus = EventBus.create();
+        Map<Integer, Integer> lastSeen = new ConcurrentHashMap<>();
+        Map<Integer, Thread> threadOfKey = new ConcurrentHashMap<>();
+        Set<Thread> workers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        AtomicInteger outOfOrder = new AtomicInteger();
+        AtomicInteger wrongThread = new AtomicInteger();
+        AtomicInteger delivered = new AtomicInteger();
+        bus.subscribe(KeyedEvent.class, event -> {
+            Thread current = Thread.currentThread();
+            workers.add(current);
+            if (threadOfKey.computeIfAbsent(event.key, k -> current) != current) { wrongThread.incrementAndGet(); }
+            // no other thread touches this key, so this doesn't need to be atomic
+            if (lastSeen.getOrDefault(event.key, 0) >= event.index) { outOfOrder.incrementAndGet(); }
+            lastSeen.put(event.key, event.index);
+            delivered.incrementAndGet();
+        });
+        PartitionedPipeline pipeline = bus.createPartitionedPipeline(4, 256, WaitStrategy.YIELD, e -> ((KeyedEvent) e).key);
+        assertEquals(4, pipeline.getPartitionCount());
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 1; i <= eventsPerKey; i++) {
+                    for (int key = producer; key < keys; key += 4) {
+                        pipeline.publish(new KeyedEvent(key, i));
+                    }
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(30, TimeUnit.SECONDS));
+        assertTrue(pipeline.isShutdown());
+        assertEquals(keys * eventsPerKey, delivered.get());
+        assertEquals(0, outOfOrder.get());
+        assertEquals(0, wrongThread.get());
+        assertTrue(workers.size() > 1);
+    }
+
+    @Test
+    public void testExplicitKey() throws Exception {
+        EventBus bus = EventBus.create();
+        Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        bus.subscribe(Object.class, event -> threads.add(Thread.currentThread()));
+        PartitionedPipeline pipeline = bus.createPartitionedPipeline(8, 16, WaitStrategy.PARK, e -> null);
+        for (int i = 0; i < 100; i++) {
+            pipeline.publish("key", new Object());
+        }
+        pipeline.shutdown();
+        assertTrue(pipeline.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1, threads.size());
+    }
+
+    private static class KeyedEvent {
+        final int key;
+        final int index;
+
+        KeyedEvent(int key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.event;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.Test;
+
+public class RingBufferPipelineTest {
+    @Test
+    public void testBusySpin() throws Exception {
+        testMultipleProducers(WaitStrategy.BUSY_SPIN);
+    }
+
+    @Test
+    public void testYield() throws Exception {
+        testMultipleProducers(WaitStrategy.YIELD);
+    }
+
+    @Test
+    public void testPark() throws Exception {
+        testMultipleProducers(WaitStrategy.PARK);
+    }
+
+    private void testMultipleProducers(WaitStrategy waitStrategy) throws Exception {
+        int producers = 4;
+        int eventsPerProducer = 100_000;
+
+        EventBus bus = EventBus.create();
+        // only accessed by the consumer thread
+        int[] lastSeen = new int[producers];
+        AtomicInteger outOfOrder = new AtomicInteger();
+        AtomicInteger delivered = new AtomicInteger();
+        bus.subscribe(TestEvent.class, event -> {
+            if (event.index <= lastSeen[event.producer]) { outOfOrder.incrementAndGet(); }
+            lastSeen[event.producer] = event.index;
+            delivered.incrementAndGet();
+        });
+        RingBufferPipeline pipeline = bus.createRingBuffer(1024, waitStrategy);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            int producer = i;
+            Thread thread = new Thread(() -> {
+                for (int j = 1; j <= eventsPerProducer; j++) {
+                    pipeline.publish(new TestEvent(producer, j));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(producers * eventsPerProducer, delivered.get());
+        assertEquals(0, outOfOrder.get());
+    }
+
+    @Test
+    public void testMultipleConsumers() throws Exception {
+        int producers = 4;
+        int eventsPerProducer = 100_000;
+
+        EventBus bus = EventBus.create();
+        AtomicIntegerArray seen = new AtomicIntegerArray(producers * eventsPerProducer);
+        Set<Thread> consumers = ConcurrentHashMap.newKeySet();
+        bus.subscribe(TestEvent.class, event -> {
+            seen.incrementAndGet(event.producer * eventsPerProducer + event.index - 1);
+            consumers.add(Thread.currentThread());
+        });
+        RingBufferPipeline pipeline = bus.createRingBuffer(1024, 3, WaitStrategy.YIELD, Thread::new);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            int producer = i;
+            Thread thread = new Thread(() -> {
+                for (int j = 1; j <= eventsPerProducer; j++) {
+                    pipeline.publish(new TestEvent(producer, j));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(30, TimeUnit.SECONDS));
+        // every event exactly once
+        for (int i = 0; i < seen.length(); i++) {
+            assertEquals(1, seen.get(i));
+        }
+        assertTrue(consumers.size() <= 3);
+    }
+
+    @Test
+    public void testTryPublishFull() throws Exception {
+        EventBus bus = EventBus.create();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger delivered = new AtomicInteger();
+        bus.subscribe(Object.class, event -> {
+            release.await();
+            delivered.incrementAndGet();
+        });
+        RingBufferPipeline pipeline = bus.createRingBuffer(4, WaitStrategy.PARK);
+
+        // one event may already be taken by the blocked consumer, the buffer must fill up within a few more
+        int published = 0;
+        while (pipeline.tryPublish(new Object())) {
+            published++;
+            assertTrue(published <= 5);
+        }
+        assertTrue(published >= 4);
+
+        pipeline.shutdown();
+        try {
+            pipeline.publish(new Object());
+            fail();
+        } catch (RejectedExecutionException expected) {}
+
+        release.countDown();
+        assertTrue(pipeline.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(published, delivered.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBufferSize() {
+        EventBus.create().createRingBuffer(1000, WaitStrategy.PARK);
+    }
+
+    private static class TestEvent {
+        final int producer;
+        final int index;
+
+        TestEvent(int producer, int index) {
+            this.producer = producer;
+            this.index = index;
+        }
+    }
+}
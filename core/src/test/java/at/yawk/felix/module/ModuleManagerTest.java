@@ -0,0 +1,537 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import static org.junit.Assert.*;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ModuleManagerTest {
+    @Test
+    public void testMissing1() throws Exception {
+        ModuleManager moduleManager = ModuleManager.create();
+        assertFalse(moduleManager.has(CorrectModule.class));
+        assertFalse(moduleManager.optional(CorrectModule.class).isPresent());
+        assertEquals(0, moduleManager.all(CorrectModule.class).count());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMissing2() throws Exception {
+        ModuleManager moduleManager = ModuleManager.create();
+        moduleManager.get(CorrectModule.class);
+    }
+
+    @Test
+    public void testRegisterObject() throws Exception {
+        ModuleManager moduleManager = ModuleManager.create();
+        assertFalse(moduleManager.has(CorrectModule.class));
+
+        CorrectModule module = new CorrectModule();
+        moduleManager.registerModuleObject(module);
+
+        assertTrue(moduleManager.has(CorrectModule.class));
+        assertEquals(module, moduleManager.get(CorrectModule.class));
+    }
+
+    @Test
+    public void testRegisterClass() throws Exception {
+        ModuleManager moduleManager = ModuleManager.create();
+        assertFalse(moduleManager.has(CorrectModule.class));
+
+        moduleManager.registerModule(CorrectModule.class);
+
+        assertTrue(moduleManager.has(CorrectModule.class));
+    }
+
+    @Test
+    public void testRegisterClassDuplicate() throws Exception {
+        ModuleManager moduleManager = ModuleManager.create();
+        assertFalse(moduleManager.has(CorrectModule.class));
+
+        moduleManager.registerModule(CorrectModule.class);
+        assertTrue(moduleManager.has(CorrectModule.class));
+        moduleManager.registerModule(CorrectModule.class);
+
+        assertEquals(1, moduleManager.all(CorrectModule.class).count());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRegisterObjectDuplicate() throws Exception {
+        ModuleManager moduleManager = ModuleManager.create();
+        assertFalse(moduleManager.has(CorrectModule.class));
+
+        moduleManager.registerModuleObject(new CorrectModule());
+        assertTrue(moduleManager.has(CorrectModule.class));
+        moduleManager.registerModuleObject(new CorrectModule());
+    }
+
+    @Test
+    public void testRegisterAnonymous() throws Exception {
+        ModuleManager moduleManager = ModuleManager.create();
+        assertFalse(moduleManager.has(Object.class));
+
+        moduleManager.registerModuleAnonymous(new Object());
+        assertTrue(moduleManager.has(Object.class));
+        moduleManager.registerModuleAnonymous(new Object());
+        assertEquals(2, moduleManager.all().count());
+    }
+
+    @Test
+    public void testInitializeInterface() {
+        ModuleManager moduleManager = ModuleManager.create();
+        CorrectModuleInit module = new CorrectModuleInit();
+        moduleManager.registerModuleObject(module);
+        assertTrue(module.called);
+    }
+
+    @Test
+    public void testInitializeAnnotation1() {
+        ModuleManager moduleManager = ModuleManager.create();
+        AtomicBoolean called = new AtomicBoolean(false);
+        moduleManager.registerModuleObject(new CorrectModule() {
+            @Init
+            public void initialize(ModuleManager manager) {
+                called.set(true);
+            }
+        });
+        assertTrue(called.get());
+    }
+
+    @Test
+    public void testInitializeAnnotation2() {
+        ModuleManager moduleManager = ModuleManager.create();
+        AtomicBoolean called = new AtomicBoolean(false);
+        moduleManager.registerModuleObject(new CorrectModule() {
+            @Init
+            public void initialize() {
+                called.set(true);
+            }
+        });
+        assertTrue(called.get());
+    }
+
+    @Test
+    public void testInitializeAnnotation3() {
+        ModuleManager moduleManager = ModuleManager.create();
+        CorrectModuleWithFieldInit module = new CorrectModuleWithFieldInit();
+        moduleManager.registerModuleObject(module);
+        assertNotNull(module.moduleManager);
+    }
+
+    @Test
+    public void testProvide() {
+        ModuleManager mm = ModuleManager.create();
+        assertFalse(mm.has(Provider.class));
+        mm.registerModuleAnonymous(new Implementation());
+        assertTrue(mm.get(Provider.class).returnTrue());
+    }
+
+    @Test
+    public void testCircularDepend() {
+        ModuleManager mm = ModuleManager.create();
+        mm.registerModule(CircularModule1.class);
+        assertTrue(mm.has(CircularModule1.class));
+        assertTrue(mm.has(CircularModule2.class));
+    }
+
+    @Test
+    public void testRegisterModulesConcurrently() throws Exception {
+        ModuleManager mm = ModuleManager.create();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            parallelModulesRunning = new CountDownLatch(2);
+            // the dependencies of DependentModule are discovered and wait for each other in their init
+            mm.registerModules(Collections.singleton(DependentModule.class), RegistrationProperties.defaults, executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(mm.get(ParallelModule1.class).concurrent);
+        assertTrue(mm.get(ParallelModule2.class).concurrent);
+        assertTrue(mm.get(DependentModule.class).dependenciesPresent);
+    }
+
+    @Test
+    public void testRegisterModulesCircular() {
+        ModuleManager mm = ModuleManager.create();
+        mm.registerModules(Arrays.asList(CircularModule1.class, CorrectModule.class));
+        assertTrue(mm.has(CircularModule1.class));
+        assertTrue(mm.has(CircularModule2.class));
+        assertTrue(mm.has(CorrectModule.class));
+    }
+
+    @Test
+    public void testRegisterModulesFailure() {
+        ModuleManager mm = ModuleManager.create();
+        try {
+            mm.registerModules(Arrays.asList(DependsOnFailingModule.class, CorrectModule.class));
+            fail();
+        } catch (InvalidModuleException expected) {}
+        assertTrue(mm.has(CorrectModule.class));
+        assertFalse(mm.hasOrLoading(FailingModule.class));
+        assertFalse(mm.hasOrLoading(DependsOnFailingModule.class));
+    }
+
+    @Test
+    public void testRegisterModulesSkipsDuplicates() {
+        ModuleManager mm = ModuleManager.create();
+        lazyModulesCreated = new AtomicInteger();
+        mm.registerModule(LazyModule.class);
+        // the duplicate is rejected by class, only LazyDependentModule is instantiated
+        mm.registerModules(Arrays.asList(LazyModule.class, LazyDependentModule.class));
+        assertEquals(2, lazyModulesCreated.get());
+        assertEquals(1, mm.all(LazyModule.class).count());
+        assertTrue(mm.get(LazyDependentModule.class).dependencyPresent);
+    }
+
+    @Test
+    public void testRegisterModulesLazy() {
+        ModuleManager mm = ModuleManager.create();
+        lazyModulesCreated = new AtomicInteger();
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.setLazy(true);
+        mm.registerModules(Collections.singleton(LazyDependentModule.class), properties, Runnable::run);
+        assertEquals(0, lazyModulesCreated.get());
+
+        assertTrue(mm.get(LazyDependentModule.class).dependencyPresent);
+        assertEquals(2, lazyModulesCreated.get());
+    }
+
+    @Test
+    public void testRegisterDisjointModulesConcurrently() throws Exception {
+        ModuleManager mm = ModuleManager.create();
+        unrelatedModulesRunning = new CountDownLatch(2);
+        // both modules wait for each other in their init, so this only works if neither registration blocks the other
+        Thread thread = new Thread(() -> mm.registerModule(UnrelatedModule1.class));
+        thread.start();
+        mm.registerModule(UnrelatedModule2.class);
+        thread.join();
+        assertTrue(mm.get(UnrelatedModule1.class).concurrent);
+        assertTrue(mm.get(UnrelatedModule2.class).concurrent);
+    }
+
+    @Test
+    public void testRegisterWaitsForLoadingModule() throws Exception {
+        ModuleManager mm = ModuleManager.create();
+        slowModuleRunning = new CountDownLatch(1);
+        slowModuleRelease = new CountDownLatch(1);
+        Thread thread = new Thread(() -> mm.registerModule(SlowModule.class));
+        thread.start();
+        slowModuleRunning.await();
+
+        AtomicBoolean presentAfterRegister = new AtomicBoolean();
+        Thread waiting = new Thread(() -> {
+            mm.registerModule(SlowModule.class);
+            presentAfterRegister.set(mm.has(SlowModule.class));
+        });
+        waiting.start();
+        assertTrue(mm.hasOrLoading(SlowModule.class));
+        assertFalse(mm.has(SlowModule.class));
+        slowModuleRelease.countDown();
+        thread.join();
+        waiting.join();
+        assertTrue(presentAfterRegister.get());
+        assertEquals(1, mm.all(SlowModule.class).count());
+    }
+
+    @Test
+    public void testRegisterLazy() {
+        ModuleManager mm = ModuleManager.create();
+        lazyModulesCreated = new AtomicInteger();
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.setLazy(true);
+        mm.registerModule(LazyDependentModule.class, properties);
+        assertEquals(0, lazyModulesCreated.get());
+        assertTrue(mm.hasOrLoading(LazyDependentModule.class));
+        assertFalse(mm.hasOrLoading(LazyModule.class));
+
+        // the dependency is registered and loaded along with the module
+        assertTrue(mm.get(LazyDependentModule.class).dependencyPresent);
+        assertTrue(mm.has(LazyModule.class));
+        assertEquals(2, lazyModulesCreated.get());
+    }
+
+    @Test
+    public void testRegisterLazyDoesNotInstantiate() {
+        ModuleManager mm = ModuleManager.create();
+        lazyModulesCreated = new AtomicInteger();
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.setLazy(true);
+        // the properties of Module extensions are only known from an instance
+        try {
+            mm.registerModule(CountingModule.class, properties);
+            fail();
+        } catch (IllegalArgumentException expected) {}
+        assertEquals(0, lazyModulesCreated.get());
+        assertFalse(mm.hasOrLoading(CountingModule.class));
+
+        mm.registerModule(CountingModule.class);
+        assertEquals(1, lazyModulesCreated.get());
+        // duplicates are rejected before anything else happens
+        mm.registerModule(CountingModule.class, properties);
+        mm.registerModule(LazyModule.class, properties);
+        mm.registerModule(LazyModule.class, properties);
+        assertEquals(1, lazyModulesCreated.get());
+
+        assertEquals(1, mm.all(LazyModule.class).count());
+        assertEquals(1, mm.all(CountingModule.class).count());
+        assertEquals(2, lazyModulesCreated.get());
+    }
+
+    @Test
+    public void testHasLeavesLazyModuleUnloaded() {
+        ModuleManager mm = ModuleManager.create();
+        lazyModulesCreated = new AtomicInteger();
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.setLazy(true);
+        mm.registerModule(LazyModule.class, properties);
+
+        assertTrue(mm.has(LazyModule.class));
+        assertTrue(mm.ref(LazyModule.class).isPresent());
+        assertEquals(0, lazyModulesCreated.get());
+    }
+
+    @Test
+    public void testRegisterLazyConcurrentLookup() throws Exception {
+        ModuleManager mm = ModuleManager.create();
+        lazyModulesCreated = new AtomicInteger();
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.setLazy(true);
+        mm.registerModule(LazyModule.class, properties);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<LazyModule>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> mm.get(LazyModule.class)));
+            }
+            for (Future<LazyModule> future : futures) {
+                assertSame(futures.get(0).get(), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, lazyModulesCreated.get());
+    }
+
+    @Test
+    public void testRef() {
+        ModuleManager mm = ModuleManager.create();
+        ModuleRef<CorrectModule> ref = mm.ref(CorrectModule.class);
+        assertSame(ref, mm.ref(CorrectModule.class));
+        assertFalse(ref.isPresent());
+        try {
+            ref.get();
+            fail();
+        } catch (IllegalStateException expected) {}
+
+        mm.registerModule(CorrectModuleInit.class);
+        assertTrue(ref.isPresent());
+        assertSame(mm.get(CorrectModuleInit.class), ref.get());
+    }
+
+    @Test
+    public void testGetDoesNotAllocate() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        ModuleManager mm = ModuleManager.create();
+        mm.registerModule(CorrectModuleInit.class);
+        Object module = mm.get(CorrectModuleInit.class);
+
+        // no ref() call: plain lookups must use the cached snapshot instead of scanning the registrations
+        for (int i = 0; i < 200_000; i++) {
+            assertSame(module, mm.get(CorrectModuleInit.class));
+            assertTrue(mm.has(CorrectModule.class));
+        }
+
+        int lookups = 1_000_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < lookups; i++) {
+            if (mm.get(CorrectModuleInit.class) != module || !mm.has(CorrectModule.class)) { fail(); }
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("Allocated " + allocated + " bytes for " + lookups + " lookups", allocated < 64 * 1024);
+    }
+
+    @Test
+    public void testRefFailedRegistration() {
+        ModuleManager mm = ModuleManager.create();
+        ModuleRef<FailingModule> ref = mm.ref(FailingModule.class);
+        try {
+            mm.registerModule(FailingModule.class);
+            fail();
+        } catch (InvalidModuleException expected) {}
+        assertFalse(ref.isPresent());
+    }
+
+    @Test
+    public void testRefLazy() {
+        ModuleManager mm = ModuleManager.create();
+        lazyModulesCreated = new AtomicInteger();
+        ModuleRef<LazyModule> ref = mm.ref(LazyModule.class);
+        RegistrationProperties properties = new RegistrationProperties();
+        properties.setLazy(true);
+        mm.registerModule(LazyModule.class, properties);
+        assertEquals(0, lazyModulesCreated.get());
+
+        LazyModule module = ref.get();
+        assertSame(module, ref.get());
+        assertEquals(1, lazyModulesCreated.get());
+    }
+
+    private static CountDownLatch parallelModulesRunning;
+
+    @AnnotatedModule
+    private static class ParallelModule1 {
+        boolean concurrent;
+
+        @Init
+        void init() throws InterruptedException {
+            parallelModulesRunning.countDown();
+            concurrent = parallelModulesRunning.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @AnnotatedModule
+    private static class ParallelModule2 extends ParallelModule1 {}
+
+    @AnnotatedModule(dependencies = { ParallelModule1.class, ParallelModule2.class })
+    private static class DependentModule {
+        boolean dependenciesPresent;
+
+        @Init
+        void init(ModuleManager manager) {
+            dependenciesPresent = manager.has(ParallelModule1.class) && manager.has(ParallelModule2.class);
+        }
+    }
+
+    private static CountDownLatch unrelatedModulesRunning;
+
+    @AnnotatedModule
+    private static class UnrelatedModule1 {
+        boolean concurrent;
+
+        @Init
+        void init() throws InterruptedException {
+            unrelatedModulesRunning.countDown();
+            concurrent = unrelatedModulesRunning.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @AnnotatedModule
+    private static class UnrelatedModule2 {
+        boolean concurrent;
+
+        @Init
+        void init() throws InterruptedException {
+            unrelatedModulesRunning.countDown();
+            concurrent = unrelatedModulesRunning.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static CountDownLatch slowModuleRunning;
+    private static CountDownLatch slowModuleRelease;
+
+    @AnnotatedModule
+    private static class SlowModule {
+        @Init
+        void init() throws InterruptedException {
+            slowModuleRunning.countDown();
+            slowModuleRelease.await();
+        }
+    }
+
+    private static AtomicInteger lazyModulesCreated;
+
+    @AnnotatedModule
+    private static class LazyModule {
+        LazyModule() {
+            lazyModulesCreated.incrementAndGet();
+        }
+    }
+
+    private static class CountingModule extends Module {
+        CountingModule() {
+            lazyModulesCreated.incrementAndGet();
+        }
+    }
+
+    @AnnotatedModule(dependencies = LazyModule.class)
+    private static class LazyDependentModule {
+        boolean dependencyPresent;
+
+        LazyDependentModule() {
+            lazyModulesCreated.incrementAndGet();
+        }
+
+        @Init
+        void init(ModuleManager manager) {
+            dependencyPresent = manager.has(LazyModule.class);
+        }
+    }
+
+    @AnnotatedModule
+    private static class FailingModule {
+        @Init
+        void init() {
+            throw new IllegalStateException();
+        }
+    }
+
+    @AnnotatedModule(dependencies = FailingModule.class)
+    private static class DependsOnFailingModule {}
+
+    private static interface Provider {
+        boolean returnTrue();
+    }
+
+    private static class Implementation implements Provider {
+        @Override
+        public boolean returnTrue() {
+            return true;
+        }
+    }
+
+    @AnnotatedModule
+    private static class CorrectModule {}
+
+    private static class CorrectModuleInit extends CorrectModule implements InitializableModule {
+        boolean called = false;
+
+        @Override
+        public void initialize(ModuleManager manager) {
+            called = true;
+        }
+    }
+
+    @AnnotatedModule(dependencies = CircularModule2.class)
+    private static class CircularModule1 {}
+
+    @AnnotatedModule(dependencies = CircularModule1.class)
+    private static class CircularModule2 {}
+
+    private static class CorrectModuleWithFieldInit extends CorrectModule {
+        @Init private ModuleManager moduleManager;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.module;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.Test;
+
+public class SnapshotListTest {
+    @Test
+    public void testAddRemove() {
+        SnapshotList<String> list = new SnapshotList<>();
+        list.add("a");
+        list.add("b");
+        list.add("c");
+        assertTrue(list.remove("b"));
+        assertFalse(list.remove(new String("a")));
+        list.add("d");
+        assertEquals(Arrays.asList("a", "c", "d"), list.stream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testStreamIsSnapshot() {
+        SnapshotList<Integer> list = new SnapshotList<>();
+        IntStream.range(0, 3).forEach(list::add);
+        Stream<Integer> before = list.stream();
+        // grows the array in place and then copies it
+        IntStream.range(3, 100).forEach(list::add);
+        list.remove(0);
+        assertEquals(Arrays.asList(0, 1, 2), before.collect(Collectors.toList()));
+
+        List<Integer> after = list.stream().collect(Collectors.toList());
+        assertEquals(99, after.size());
+        assertEquals(Integer.valueOf(1), after.get(0));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Base class of the processors that generate a companion class next to the classes of the compilation.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+abstract class GeneratingProcessor extends AbstractProcessor {
+    /**
+     * Classes written by this processor, so later rounds don't try to write them again.
+     */
+    private final Set<String> generated = new HashSet<>();
+
+    /**
+     * All classes are inspected, not only annotated ones: inherited annotations count too.
+     */
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (isEnabled()) {
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+                processRecursively(type);
+            }
+        }
+        // other processors may want to see the annotations too
+        return false;
+    }
+
+    private void processRecursively(TypeElement type) {
+        if (type.getKind() == ElementKind.CLASS || type.getKind() == ElementKind.ENUM) {
+            processType(type);
+        }
+        for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+            processRecursively(member);
+        }
+    }
+
+    /**
+     * Whether the types this processor needs are on the compile class path.
+     */
+    protected abstract boolean isEnabled();
+
+    /**
+     * Called for every class and enum of the compilation, including nested ones.
+     */
+    protected abstract void processType(TypeElement type);
+
+    /**
+     * Write the companion class of the given type, named like its binary name followed by the given suffix.
+     *
+     * @param members Writes the body of the class.
+     */
+    protected void write(TypeElement origin, String suffix, String implemented, Consumer<PrintWriter> members) {
+        String binaryName = processingEnv.getElementUtils().getBinaryName(origin).toString();
+        if (!generated.add(binaryName + suffix)) { return; }
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(origin);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) +
+                            suffix;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(binaryName + suffix, origin).openWriter();
+             PrintWriter out = new PrintWriter(writer)) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by " + getClass().getName() + " for {@link " + origin.getQualifiedName() + "}.");
+            out.println(" */");
+            out.println("public final class " + simpleName + " implements " + implemented + " {");
+            members.accept(out);
+            out.println("}");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                                     "Could not write " + binaryName + suffix + ": " + e, origin);
+        }
+    }
+
+    protected void skip(TypeElement type, String what, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                                                 "No " + what + " generated, " + reason, type);
+    }
+
+    /**
+     * Whether the given type can be referenced from generated code in the given package.
+     */
+    protected boolean isTypeAccessible(TypeMirror type, PackageElement from) {
+        switch (type.getKind()) {
+        case ARRAY:
+            TypeMirror component = ((ArrayType) type).getComponentType();
+            return component.getKind().isPrimitive() || isTypeAccessible(component, from);
+        case DECLARED:
+            return isClassAccessible((TypeElement) ((DeclaredType) type).asElement(), from);
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Whether the given class can be referenced from generated code in the given package.
+     */
+    protected boolean isClassAccessible(TypeElement type, PackageElement from) {
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            NestingKind nesting = ((TypeElement) e).getNestingKind();
+            if (nesting == NestingKind.ANONYMOUS || nesting == NestingKind.LOCAL) { return false; }
+            if (!isMemberAccessible(e, from)) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the given member can be used from generated code in the given package, assuming its declaring type can
+     * be.
+     */
+    protected boolean isMemberAccessible(Element member, PackageElement from) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) { return true; }
+        if (modifiers.contains(Modifier.PRIVATE)) { return false; }
+        return processingEnv.getElementUtils().getPackageOf(member).equals(from);
+    }
+
+    /**
+     * The value of the given annotation element, including defaults.
+     */
+    protected Object value(AnnotationMirror annotation, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        throw new IllegalStateException("Missing annotation value " + name);
+    }
+
+    /**
+     * Find the annotation of the given type on an element.
+     */
+    protected AnnotationMirror findAnnotation(Element on, TypeElement annotationType) {
+        for (AnnotationMirror annotation : on.getAnnotationMirrors()) {
+            if (annotation.getAnnotationType().asElement().equals(annotationType)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+
+/**
+ * Annotation processor that generates a ModuleDescriptor for every module class, so ModuleManager can read its
+ * properties and run its Init members without reflection.
+ * <p>
+ * Classes are considered modules if they or their supertypes carry module annotations or Init members or if they
+ * extend Module or InitializableModule. Classes with Init members or module annotations that can't be handled by
+ * generated code in the same package, for example private Init methods, get no descriptor and keep using reflection.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+public class ModuleProcessor extends GeneratingProcessor {
+    static final String DESCRIPTOR = "at.yawk.felix.module.ModuleDescriptor";
+    static final String SUFFIX = "$$ModuleDescriptor";
+
+    private static final String MODULE_MANAGER = "at.yawk.felix.module.ModuleManager";
+    private static final String PROPERTIES = "at.yawk.felix.module.ModuleProperties";
+
+    private TypeElement moduleManager;
+    private TypeElement init;
+    private TypeElement annotatedModule;
+    private TypeElement module;
+    private TypeElement dependency;
+    private TypeElement dependencies;
+    private TypeElement register;
+    private TypeElement registrations;
+    private TypeElement moduleClass;
+    private TypeElement initializableModule;
+
+    @Override
+    protected boolean isEnabled() {
+        moduleManager = type(MODULE_MANAGER);
+        init = type("at.yawk.felix.module.Init");
+        annotatedModule = type("at.yawk.felix.module.AnnotatedModule");
+        module = type("at.yawk.felix.module.annotated.Module");
+        dependency = type("at.yawk.felix.module.annotated.Dependency");
+        dependencies = type("at.yawk.felix.module.annotated.Dependencies");
+        register = type("at.yawk.felix.module.annotated.Register");
+        registrations = type("at.yawk.felix.module.annotated.Registrations");
+        moduleClass = type("at.yawk.felix.module.Module");
+        initializableModule = type("at.yawk.felix.module.InitializableModule");
+        return moduleManager != null;
+    }
+
+    private TypeElement type(String name) {
+        return processingEnv.getElementUtils().getTypeElement(name);
+    }
+
+    @Override
+    protected void processType(TypeElement type) {
+        // only ever used for exactly this class
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) { return; }
+
+        List<String> problems = new ArrayList<>();
+        Properties properties = findProperties(type, problems);
+        List<InitMember> initMembers = new ArrayList<>();
+        collectInitMembers(type, new HashSet<>(), initMembers, problems);
+        if (properties == null && initMembers.isEmpty() &&
+            !isSubtype(type, moduleClass) && !isSubtype(type, initializableModule)) {
+            // not a module
+            return;
+        }
+
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        if (!isClassAccessible(type, pkg)) {
+            problems.add("it is not accessible from its package");
+        }
+        if (properties != null) {
+            properties.check(pkg, problems);
+        }
+        for (InitMember member : initMembers) {
+            member.check(pkg, problems);
+        }
+        if (!problems.isEmpty()) {
+            skip(type, "module descriptor", problems.get(0));
+            return;
+        }
+
+        initMembers.sort(Comparator.comparingInt(m -> m.priority));
+        write(type, SUFFIX, DESCRIPTOR, out -> {
+            if (properties == null) {
+                out.println("    private static final java.util.Optional<" + PROPERTIES + "> PROPERTIES =");
+                out.println("            java.util.Optional.empty();");
+            } else {
+                out.println("    private static final java.util.Optional<" + PROPERTIES + "> PROPERTIES =");
+                out.println("            java.util.Optional.of(" + PROPERTIES + ".create(");
+                out.println("                    classes(" + literals(properties.dependencies) + "),");
+                out.println("                    classes(" + literals(properties.excluded) + "),");
+                out.println("                    classes(" + literals(properties.softDependencies) + ")));");
+                out.println();
+                out.println("    private static java.util.Set<Class<?>> classes(Class<?>... classes) {");
+                out.println("        return new java.util.HashSet<>(java.util.Arrays.asList(classes));");
+                out.println("    }");
+            }
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.Optional<" + PROPERTIES + "> getProperties() {");
+            out.println("        return PROPERTIES;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    @SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+            out.println("    public void initialize(" + MODULE_MANAGER + " manager, Object module) throws Throwable {");
+            for (InitMember member : initMembers) {
+                out.println("        " + member.statement(type) + ";");
+            }
+            out.println("    }");
+        });
+    }
+
+    private static String literals(Set<TypeMirror> classes) {
+        return classes.stream().map(type -> type + ".class").collect(Collectors.joining(", "));
+    }
+
+    private boolean isSubtype(TypeElement type, TypeElement of) {
+        Types types = processingEnv.getTypeUtils();
+        return of != null && types.isSubtype(types.erasure(type.asType()), types.erasure(of.asType()));
+    }
+
+    private static TypeElement asElement(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) type).asElement() : null;
+    }
+
+    /**
+     * Superclass and interfaces of the given type, superclass first.
+     */
+    private static List<TypeElement> supertypes(TypeElement type) {
+        List<TypeElement> supertypes = new ArrayList<>();
+        TypeElement superclass = asElement(type.getSuperclass());
+        if (superclass != null) { supertypes.add(superclass); }
+        for (TypeMirror itf : type.getInterfaces()) {
+            supertypes.add(asElement(itf));
+        }
+        return supertypes;
+    }
+
+    /**
+     * Find the properties the reflective discovery strategies would find: the most specific AnnotatedModule annotation
+     * in the superclasses or, if there is none, the union of the .annotated annotations if any type in the hierarchy
+     * has the Module annotation.
+     *
+     * @return the properties or null if there are no module annotations.
+     */
+    private Properties findProperties(TypeElement type, List<String> problems) {
+        if (annotatedModule != null) {
+            for (TypeElement t = type; t != null; t = asElement(t.getSuperclass())) {
+                AnnotationMirror annotation = findAnnotation(t, annotatedModule);
+                if (annotation != null) {
+                    Properties properties = new Properties();
+                    properties.dependencies.addAll(classes(value(annotation, "dependencies")));
+                    properties.excluded.addAll(classes(value(annotation, "excludedFromRegistration")));
+                    properties.softDependencies.addAll(classes(value(annotation, "softDependencies")));
+                    return properties;
+                }
+            }
+        }
+        if (module != null) {
+            Properties properties = new Properties();
+            if (collectAnnotations(type, properties, problems)) {
+                return properties;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collect the .annotated annotations of the given type and its supertypes.
+     *
+     * @return whether the Module annotation was found.
+     */
+    private boolean collectAnnotations(TypeElement on, Properties properties, List<String> problems) {
+        for (AnnotationMirror annotation : repeatable(on, dependency, dependencies)) {
+            boolean soft = (Boolean) value(annotation, "soft");
+            (soft ? properties.softDependencies : properties.dependencies)
+                    .add(classLiteral((TypeMirror) value(annotation, "value")));
+        }
+        for (AnnotationMirror annotation : repeatable(on, register, registrations)) {
+            TypeMirror as = (TypeMirror) value(annotation, "as");
+            Types types = processingEnv.getTypeUtils();
+            if (!types.isAssignable(types.erasure(on.asType()), types.erasure(as))) {
+                // the reflective strategy reports this when registering
+                problems.add(on + " is annotated to be registered as " + as + " even though it doesn't extend it");
+            }
+            if (!(Boolean) value(annotation, "register")) {
+                properties.excluded.add(classLiteral(as));
+            }
+        }
+        boolean found = findAnnotation(on, module) != null;
+        for (TypeElement supertype : supertypes(on)) {
+            found |= collectAnnotations(supertype, properties, problems);
+        }
+        return found;
+    }
+
+    /**
+     * Instances of a repeatable annotation on the given element, whether they are wrapped in their container or not.
+     */
+    @SuppressWarnings("unchecked")
+    private List<AnnotationMirror> repeatable(Element on, TypeElement annotation, TypeElement container) {
+        List<AnnotationMirror> found = new ArrayList<>();
+        if (annotation == null) { return found; }
+        AnnotationMirror direct = findAnnotation(on, annotation);
+        if (direct != null) { found.add(direct); }
+        AnnotationMirror wrapped = container == null ? null : findAnnotation(on, container);
+        if (wrapped != null) {
+            for (AnnotationValue value : (List<? extends AnnotationValue>) value(wrapped, "value")) {
+                found.add((AnnotationMirror) value.getValue());
+            }
+        }
+        return found;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TypeMirror> classes(Object annotationValue) {
+        List<TypeMirror> classes = new ArrayList<>();
+        for (AnnotationValue value : (List<? extends AnnotationValue>) annotationValue) {
+            classes.add(classLiteral((TypeMirror) value.getValue()));
+        }
+        return classes;
+    }
+
+    private TypeMirror classLiteral(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type);
+    }
+
+    /**
+     * Collect the Init members in the order AnnotationInitializer visits them: the type itself, then its superclass
+     * and interfaces recursively, methods before fields.
+     */
+    private void collectInitMembers(TypeElement type, Set<TypeElement> visited, List<InitMember> members,
+                                    List<String> problems) {
+        if (init == null || !visited.add(type)) { return; }
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            AnnotationMirror annotation = findAnnotation(method, init);
+            if (annotation == null) { continue; }
+            List<? extends VariableElement> parameters = method.getParameters();
+            if (parameters.isEmpty()) {
+                members.add(new InitMember(type, method, annotation, "()"));
+            } else if (parameters.size() == 1 && isModuleManager(parameters.get(0).asType())) {
+                members.add(new InitMember(type, method, annotation, "(manager)"));
+            }
+            // other methods are ignored by AnnotationInitializer as well
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            AnnotationMirror annotation = findAnnotation(field, init);
+            if (annotation != null && isModuleManager(field.asType())) {
+                if (field.getModifiers().contains(Modifier.FINAL)) {
+                    problems.add("the Init field " + field + " is final");
+                }
+                members.add(new InitMember(type, field, annotation, " = manager"));
+            }
+        }
+        for (TypeElement supertype : supertypes(type)) {
+            collectInitMembers(supertype, visited, members, problems);
+        }
+    }
+
+    private boolean isModuleManager(TypeMirror type) {
+        return processingEnv.getTypeUtils().isSameType(type, moduleManager.asType());
+    }
+
+    private class Properties {
+        final Set<TypeMirror> dependencies = new LinkedHashSet<>();
+        final Set<TypeMirror> excluded = new LinkedHashSet<>();
+        final Set<TypeMirror> softDependencies = new LinkedHashSet<>();
+
+        void check(PackageElement pkg, List<String> problems) {
+            for (Set<TypeMirror> classes : Arrays.asList(dependencies, excluded, softDependencies)) {
+                for (TypeMirror type : classes) {
+                    if (!isTypeAccessible(type, pkg)) {
+                        problems.add(type + " is not accessible");
+                    }
+                }
+            }
+        }
+    }
+
+    private class InitMember {
+        private final TypeElement declaringType;
+        private final Element member;
+        private final int priority;
+        /**
+         * Code following the member name: the method arguments or the field assignment.
+         */
+        private final String suffix;
+
+        InitMember(TypeElement declaringType, Element member, AnnotationMirror annotation, String suffix) {
+            this.declaringType = declaringType;
+            this.member = member;
+            this.priority = (Integer) value(annotation, "priority");
+            this.suffix = suffix;
+        }
+
+        void check(PackageElement pkg, List<String> problems) {
+            if (!isMemberAccessible(member, pkg)) {
+                problems.add(member + " in " + declaringType + " is not accessible");
+            }
+            boolean needsDeclaringType = member.getModifiers().contains(Modifier.STATIC) ||
+                                         member.getKind() == ElementKind.FIELD;
+            if (needsDeclaringType && !isClassAccessible(declaringType, pkg)) {
+                problems.add(declaringType + " is not accessible");
+            }
+        }
+
+        String statement(TypeElement module) {
+            String target;
+            if (member.getModifiers().contains(Modifier.STATIC)) {
+                target = declaringType.getQualifiedName().toString();
+            } else if (member.getKind() == ElementKind.FIELD) {
+                // fields are not virtual, go through the declaring type in case a subclass hides it
+                target = "((" + declaringType.getQualifiedName() + ") module)";
+            } else {
+                target = "((" + module.getQualifiedName() + ") module)";
+            }
+            return target + "." + member.getSimpleName() + suffix;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.processor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+
+/**
+ * Annotation processor that generates a ListenerDispatcher for every class with Subscribe methods (declared or
+ * inherited), so EventBus can subscribe its instances without reflection.
+ * <p>
+ * Classes whose handlers can't be called from generated code in the same package, for example because a handler is
+ * private, get no dispatcher and keep using reflection.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+public class SubscribeProcessor extends GeneratingProcessor {
+    static final String SUBSCRIBE = "at.yawk.felix.event.Subscribe";
+    static final String DISPATCHER = "at.yawk.felix.event.ListenerDispatcher";
+    static final String SUFFIX = "$$EventDispatcher";
+
+    private TypeElement subscribe;
+
+    @Override
+    protected boolean isEnabled() {
+        subscribe = processingEnv.getElementUtils().getTypeElement(SUBSCRIBE);
+        return subscribe != null;
+    }
+
+    @Override
+    protected void processType(TypeElement type) {
+        List<Handler> handlers = new ArrayList<>();
+        collectHandlers(type, new HashSet<>(), handlers);
+        if (!handlers.isEmpty()) {
+            generate(type, handlers);
+        }
+    }
+
+    /**
+     * Collect the handlers declared in the given type and all its superclasses and interfaces.
+     */
+    private void collectHandlers(TypeElement type, Set<TypeElement> visited, List<Handler> handlers) {
+        if (!visited.add(type)) { return; }
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            AnnotationMirror annotation = findAnnotation(method, subscribe);
+            if (annotation != null) {
+                handlers.add(new Handler(type, method, annotation));
+            }
+        }
+        List<TypeMirror> supertypes = new ArrayList<>(type.getInterfaces());
+        supertypes.add(type.getSuperclass());
+        for (TypeMirror supertype : supertypes) {
+            if (supertype.getKind() == TypeKind.DECLARED) {
+                collectHandlers((TypeElement) ((DeclaredType) supertype).asElement(), visited, handlers);
+            }
+        }
+    }
+
+    private void generate(TypeElement listener, List<Handler> handlers) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(listener);
+        if (!isClassAccessible(listener, pkg)) {
+            skip(listener, "event dispatcher", "it is not accessible from its package");
+            return;
+        }
+        for (Handler handler : handlers) {
+            String problem = handler.check(pkg);
+            if (problem != null) {
+                skip(listener, "event dispatcher", problem);
+                return;
+            }
+        }
+
+        write(listener, SUFFIX, DISPATCHER, out -> {
+            out.println("    @Override");
+            out.println("    @SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+            out.println("    public void describe(" + DISPATCHER + ".Registrar registrar) {");
+            for (Handler handler : handlers) {
+                out.println("        registrar.handler(" + handler.eventType() + ".class, " +
+                            value(handler.annotation, "priority") + ", " +
+                            value(handler.annotation, "parallel") + ", (listener, event) -> " +
+                            handler.call(listener) + ");");
+            }
+            out.println("    }");
+        });
+    }
+
+    private class Handler {
+        private final TypeElement declaringType;
+        private final ExecutableElement method;
+        private final AnnotationMirror annotation;
+
+        Handler(TypeElement declaringType, ExecutableElement method, AnnotationMirror annotation) {
+            this.declaringType = declaringType;
+            this.method = method;
+            this.annotation = annotation;
+        }
+
+        /**
+         * Returns why this handler can't be called from generated code in the given package, or null if it can.
+         */
+        String check(PackageElement pkg) {
+            if (method.getParameters().size() != 1) {
+                return method + " does not have exactly one parameter";
+            }
+            if (!isMemberAccessible(method, pkg)) {
+                return method + " in " + declaringType + " is not accessible";
+            }
+            if (method.getModifiers().contains(Modifier.STATIC) && !isClassAccessible(declaringType, pkg)) {
+                return declaringType + " is not accessible";
+            }
+            if (!isTypeAccessible(erasedEventType(), pkg)) {
+                return "the event type of " + method + " is not accessible";
+            }
+            return null;
+        }
+
+        private TypeMirror erasedEventType() {
+            return processingEnv.getTypeUtils().erasure(method.getParameters().get(0).asType());
+        }
+
+        String eventType() {
+            return erasedEventType().toString();
+        }
+
+        String call(TypeElement listener) {
+            String target = method.getModifiers().contains(Modifier.STATIC) ?
+                    declaringType.getQualifiedName().toString() :
+                    "((" + listener.getQualifiedName() + ") listener)";
+            return target + "." + method.getSimpleName() + "(event)";
+        }
+    }
+}
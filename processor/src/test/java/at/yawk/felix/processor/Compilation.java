@@ -0,0 +1,108 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.processor;
+
+import static org.junit.Assert.assertTrue;
+
+import at.yawk.felix.event.EventBus;
+import java.lang.reflect.Constructor;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.processing.Processor;
+import javax.tools.*;
+
+/**
+ * Compiles test sources with a processor into a fresh class loader.
+ *
+ * @author Jonas Konrad (yawkat)
+ */
+final class Compilation {
+    private Compilation() {}
+
+    /**
+     * Compile the given sources (alternating class names and source code) with the given processor.
+     */
+    static ClassLoader compile(Processor processor, String... sources) throws Exception {
+        List<JavaFileObject> units = new ArrayList<>();
+        for (int i = 0; i < sources.length; i += 2) {
+            units.add(source(sources[i], sources[i + 1]));
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Path out = Files.createTempDirectory("felix-processor");
+        String classpath = Paths.get(EventBus.class.getProtectionDomain().getCodeSource().getLocation().toURI()) +
+                           System.getProperty("path.separator") + System.getProperty("java.class.path");
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null,
+                                                                              StandardCharsets.UTF_8);
+        JavaCompiler.CompilationTask task = compiler.getTask(
+                null, fileManager, diagnostics, Arrays.asList("-d", out.toString(), "-classpath", classpath),
+                null, units
+        );
+        task.setProcessors(Collections.singletonList(processor));
+        assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        return new URLClassLoader(new URL[]{ out.toUri().toURL() }, Compilation.class.getClassLoader());
+    }
+
+    /**
+     * Source of a test.Recorder base class for test listeners and modules. Its record method adds to the public
+     * recorded list and sets the public generated flag if it was called through a generated class with the given
+     * suffix.
+     */
+    static String recorder(String generatedSuffix) {
+        return "package test;\n" +
+               "import java.util.*;\n" +
+               "public class Recorder {\n" +
+               "    public final List<Object> recorded = new ArrayList<>();\n" +
+               "    public boolean generated;\n" +
+               "    protected void record(Object o) {\n" +
+               "        recorded.add(o);\n" +
+               "        for (StackTraceElement e : new Throwable().getStackTrace()) {\n" +
+               "            generated |= e.getClassName().endsWith(\"" + generatedSuffix + "\");\n" +
+               "        }\n" +
+               "    }\n" +
+               "}\n";
+    }
+
+    static boolean exists(ClassLoader loader, String name) {
+        try {
+            loader.loadClass(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    static Object newInstance(ClassLoader loader, String name) throws Exception {
+        Constructor<?> constructor = loader.loadClass(name).getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    static Object get(Object o, String field) throws Exception {
+        return o.getClass().getField(field).get(o);
+    }
+
+    private static JavaFileObject source(String name, String code) {
+        URI uri = URI.create("string:///" + name.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
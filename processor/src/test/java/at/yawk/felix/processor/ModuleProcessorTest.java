@@ -0,0 +1,79 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.processor;
+
+import static org.junit.Assert.*;
+
+import at.yawk.felix.module.ModuleManager;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+/**
+ * @author Jonas Konrad (yawkat)
+ */
+public class ModuleProcessorTest {
+    @Test
+    public void testGeneratedDescriptor() throws Exception {
+        ClassLoader loader = Compilation.compile(
+                new ModuleProcessor(),
+                "test.Recorder", Compilation.recorder("$$ModuleDescriptor"),
+                "test.Service", "package test;\n" +
+                                "public interface Service {}\n",
+                "test.Dep", "package test;\n" +
+                            "@at.yawk.felix.module.annotated.Module\n" +
+                            "public class Dep {}\n",
+                "test.Main", "package test;\n" +
+                             "import at.yawk.felix.module.*;\n" +
+                             "import at.yawk.felix.module.annotated.*;\n" +
+                             "@at.yawk.felix.module.annotated.Module\n" +
+                             "@Dependency(Dep.class)\n" +
+                             "@Register(as = Service.class, register = false)\n" +
+                             "public class Main extends Recorder implements Service {\n" +
+                             "    @Init ModuleManager manager;\n" +
+                             "    @Init(priority = 1)\n" +
+                             "    void second(ModuleManager manager) { record(manager == this.manager); }\n" +
+                             "    @Init\n" +
+                             "    void first() { record(\"first\"); }\n" +
+                             "}\n"
+        );
+        assertTrue(Compilation.exists(loader, "test.Main$$ModuleDescriptor"));
+        assertTrue(Compilation.exists(loader, "test.Dep$$ModuleDescriptor"));
+        assertFalse(Compilation.exists(loader, "test.Recorder$$ModuleDescriptor"));
+
+        ModuleManager manager = ModuleManager.create();
+        Object main = Compilation.newInstance(loader, "test.Main");
+        manager.registerModuleObject(main);
+
+        assertTrue(manager.has(loader.loadClass("test.Dep")));
+        assertFalse(manager.has(loader.loadClass("test.Service")));
+        assertEquals(Arrays.asList("first", true), Compilation.get(main, "recorded"));
+        assertEquals(true, Compilation.get(main, "generated"));
+    }
+
+    @Test
+    public void testPrivateInitFallsBackToReflection() throws Exception {
+        ClassLoader loader = Compilation.compile(
+                new ModuleProcessor(),
+                "test.Recorder", Compilation.recorder("$$ModuleDescriptor"),
+                "test.Main", "package test;\n" +
+                             "@at.yawk.felix.module.annotated.Module\n" +
+                             "public class Main extends Recorder {\n" +
+                             "    @at.yawk.felix.module.Init\n" +
+                             "    private void init() { record(\"init\"); }\n" +
+                             "}\n"
+        );
+        assertFalse(Compilation.exists(loader, "test.Main$$ModuleDescriptor"));
+
+        ModuleManager manager = ModuleManager.create();
+        Object main = Compilation.newInstance(loader, "test.Main");
+        manager.registerModuleObject(main);
+
+        assertEquals(Collections.singletonList("init"), Compilation.get(main, "recorded"));
+        assertEquals(false, Compilation.get(main, "generated"));
+    }
+}
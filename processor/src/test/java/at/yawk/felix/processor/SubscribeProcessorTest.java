@@ -0,0 +1,82 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package at.yawk.felix.processor;
+
+import static org.junit.Assert.*;
+
+import at.yawk.felix.event.EventBus;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * @author Jonas Konrad (yawkat)
+ */
+public class SubscribeProcessorTest {
+    @Test
+    public void testGeneratedDispatcher() throws Exception {
+        ClassLoader loader = Compilation.compile(
+                new SubscribeProcessor(),
+                "test.Recorder", Compilation.recorder("$$EventDispatcher"),
+                "test.Base", "package test;\n" +
+                             "public class Base extends Recorder {\n" +
+                             "    @at.yawk.felix.event.Subscribe(priority = 1)\n" +
+                             "    void onInteger(Integer event) { record(event); }\n" +
+                             "}\n",
+                "test.Listener", "package test;\n" +
+                                 "class Listener<T> extends Base {\n" +
+                                 "    @at.yawk.felix.event.Subscribe\n" +
+                                 "    public void onString(String event) { record(event); }\n" +
+                                 "    static class Nested extends Recorder {\n" +
+                                 "        @at.yawk.felix.event.Subscribe(parallel = false)\n" +
+                                 "        protected void onString(CharSequence event) { record(event); }\n" +
+                                 "    }\n" +
+                                 "}\n"
+        );
+        assertTrue(Compilation.exists(loader, "test.Listener$$EventDispatcher"));
+        assertTrue(Compilation.exists(loader, "test.Base$$EventDispatcher"));
+        assertTrue(Compilation.exists(loader, "test.Listener$Nested$$EventDispatcher"));
+
+        EventBus bus = EventBus.create();
+        Object listener = Compilation.newInstance(loader, "test.Listener");
+        Object nested = Compilation.newInstance(loader, "test.Listener$Nested");
+        bus.subscribe(listener);
+        bus.subscribe(nested);
+        bus.post("a");
+        bus.post(1);
+        // the serial handler of Nested is called on the async executor if it is busy
+        bus.shutdown();
+        assertTrue(bus.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("a", 1), Compilation.get(listener, "recorded"));
+        assertEquals(true, Compilation.get(listener, "generated"));
+        assertEquals(Collections.singletonList("a"), Compilation.get(nested, "recorded"));
+        assertEquals(true, Compilation.get(nested, "generated"));
+    }
+
+    @Test
+    public void testPrivateHandlerFallsBackToReflection() throws Exception {
+        ClassLoader loader = Compilation.compile(
+                new SubscribeProcessor(),
+                "test.Recorder", Compilation.recorder("$$EventDispatcher"),
+                "test.Listener", "package test;\n" +
+                                 "public class Listener extends Recorder {\n" +
+                                 "    @at.yawk.felix.event.Subscribe\n" +
+                                 "    private void onString(String event) { record(event); }\n" +
+                                 "}\n"
+        );
+        assertFalse(Compilation.exists(loader, "test.Listener$$EventDispatcher"));
+
+        EventBus bus = EventBus.create();
+        Object listener = Compilation.newInstance(loader, "test.Listener");
+        bus.subscribe(listener);
+        bus.post("a");
+        assertEquals(Collections.singletonList("a"), Compilation.get(listener, "recorded"));
+        assertEquals(false, Compilation.get(listener, "generated"));
+    }
+}